@@ -0,0 +1,99 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.tools.JavaFileObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of loading the root query bean classes with an eager companion _alias
+ * compared with the lazy holder (querybean.lazyAlias option).
+ * <p>
+ * A Java analogue of the generated Kotlin: the companion val is a static field initialised
+ * when the class is loaded and the holder object is a nested class initialised on first use.
+ * Each invocation loads and initialises all the classes via a new class loader as an
+ * application does at startup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AliasStartupBenchmark {
+
+  private static final String PACKAGE = "bench.alias";
+
+  @Param({"eager", "lazy"})
+  public String alias;
+
+  @Param({"1400"})
+  public int classCount;
+
+  @Param({"30"})
+  public int propertyCount;
+
+  private CompiledClasses classes;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    List<JavaFileObject> sources = new ArrayList<>();
+    sources.add(new SyntheticModel.Source(PACKAGE + ".Prop", "package " + PACKAGE + ";\n"
+      + "public class Prop<R> {\n"
+      + "  final String name;\n"
+      + "  final R root;\n"
+      + "  public Prop(String name, R root) { this.name = name; this.root = root; }\n"
+      + "}\n"));
+    for (int i = 0; i < classCount; i++) {
+      sources.add(queryBean("Q" + i));
+    }
+    classes = new CompiledClasses(sources);
+  }
+
+  private JavaFileObject queryBean(String name) {
+    StringBuilder src = new StringBuilder();
+    src.append("package ").append(PACKAGE).append(";\n");
+    src.append("public class ").append(name).append(" {\n");
+    if ("lazy".equals(alias)) {
+      src.append("  private static final class Alias {\n");
+      src.append("    static final ").append(name).append(" instance = new ").append(name).append("(true);\n");
+      src.append("  }\n");
+      src.append("  public static ").append(name).append(" alias() { return Alias.instance; }\n");
+    } else {
+      src.append("  private static final ").append(name).append(" _alias = new ").append(name).append("(true);\n");
+      src.append("  public static ").append(name).append(" alias() { return _alias; }\n");
+    }
+    for (int i = 0; i < propertyCount; i++) {
+      src.append("  public final Prop<").append(name).append("> property").append(i).append(";\n");
+    }
+    src.append("  private ").append(name).append("(boolean alias) {\n");
+    for (int i = 0; i < propertyCount; i++) {
+      src.append("    property").append(i).append(" = new Prop<>(\"property").append(i).append("\", this);\n");
+    }
+    src.append("  }\n");
+    src.append("}\n");
+    return new SyntheticModel.Source(PACKAGE + "." + name, src.toString());
+  }
+
+  @Benchmark
+  public void loadQueryBeans(Blackhole blackhole) throws Exception {
+    ClassLoader loader = classes.newClassLoader();
+    for (int i = 0; i < classCount; i++) {
+      blackhole.consume(Class.forName(PACKAGE + ".Q" + i, true, loader));
+    }
+  }
+}
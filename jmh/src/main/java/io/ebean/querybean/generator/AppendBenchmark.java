@@ -0,0 +1,109 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a query bean using String.format (as previously) compared with Template and the reused buffer.
+ * <p>
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm} for the bytes allocated per generated bean.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AppendBenchmark {
+
+  private static final String PACKAGE = "package %s;";
+  private static final String BEGIN_CLASS = "class Q%s : TQRootBean<%1$s, Q%1$s> {";
+  private static final String FOR_FETCH_GROUP = "    fun forFetchGroup(): Q%s {";
+  private static final String FOR_FETCH_GROUP_RETURN = "      return Q%s(FetchGroup.queryFor(%s::class.java));";
+  private static final String FIELD = "  lateinit var %s: ";
+  private static final String CONSTRUCT_DATABASE_COMMENT = "   * Construct using the %s Database.";
+  private static final String CONSTRUCT_DEFAULT = "  constructor() : super(%s::class.java)";
+  private static final String CONSTRUCT_TRANSACTION = "  constructor(transaction: Transaction) : super(%s::class.java, transaction)";
+  private static final String CONSTRUCT_DATABASE = "  constructor(database: Database) : super(%s::class.java, database)";
+  private static final String CONSTRUCT_FETCH_GROUP = "  private constructor(fetchGroupQuery: Query<%s>) : super(fetchGroupQuery)";
+
+  private static final Template T_PACKAGE = Template.of(PACKAGE);
+  private static final Template T_BEGIN_CLASS = Template.of(BEGIN_CLASS);
+  private static final Template T_FOR_FETCH_GROUP = Template.of(FOR_FETCH_GROUP);
+  private static final Template T_FOR_FETCH_GROUP_RETURN = Template.of(FOR_FETCH_GROUP_RETURN);
+  private static final Template T_FIELD = Template.of(FIELD);
+  private static final Template T_CONSTRUCT_DATABASE_COMMENT = Template.of(CONSTRUCT_DATABASE_COMMENT);
+  private static final Template T_CONSTRUCT_DEFAULT = Template.of(CONSTRUCT_DEFAULT);
+  private static final Template T_CONSTRUCT_TRANSACTION = Template.of(CONSTRUCT_TRANSACTION);
+  private static final Template T_CONSTRUCT_DATABASE = Template.of(CONSTRUCT_DATABASE);
+  private static final Template T_CONSTRUCT_FETCH_GROUP = Template.of(CONSTRUCT_FETCH_GROUP);
+
+  @Param({"10", "80"})
+  public int fieldCount;
+
+  private String[] fieldNames;
+
+  @Setup
+  public void setup() {
+    fieldNames = new String[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      fieldNames[i] = "property" + i;
+    }
+    if (!stringFormat().equals(template())) {
+      throw new IllegalStateException("Rendered content differs");
+    }
+  }
+
+  /**
+   * The previous approach of String.format per line.
+   */
+  @Benchmark
+  public String stringFormat() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(PACKAGE, "org.example.domain.query")).append('\n');
+    sb.append(String.format(BEGIN_CLASS, "Customer")).append('\n');
+    sb.append(String.format(FOR_FETCH_GROUP, "Customer")).append('\n');
+    sb.append(String.format(FOR_FETCH_GROUP_RETURN, "Customer", "Customer")).append('\n');
+    for (String fieldName : fieldNames) {
+      sb.append(String.format(FIELD, fieldName)).append("PString<QCustomer>").append('\n');
+    }
+    sb.append(String.format(CONSTRUCT_DATABASE_COMMENT, "default")).append('\n');
+    sb.append(String.format(CONSTRUCT_DEFAULT, "Customer")).append('\n');
+    sb.append(String.format(CONSTRUCT_TRANSACTION, "Customer")).append('\n');
+    sb.append(String.format(CONSTRUCT_DATABASE, "Customer")).append('\n');
+    sb.append(String.format(CONSTRUCT_FETCH_GROUP, "Customer")).append('\n');
+    return sb.toString();
+  }
+
+  /**
+   * Precompiled templates appending to the reused buffer.
+   */
+  @Benchmark
+  public String template() {
+    Append writer = Append.reuseBuffer();
+    writer.append(T_PACKAGE, "org.example.domain.query").eol();
+    writer.append(T_BEGIN_CLASS, "Customer").eol();
+    writer.append(T_FOR_FETCH_GROUP, "Customer").eol();
+    writer.append(T_FOR_FETCH_GROUP_RETURN, "Customer", "Customer").eol();
+    for (String fieldName : fieldNames) {
+      writer.append(T_FIELD, fieldName).append("PString<QCustomer>").eol();
+    }
+    writer.append(T_CONSTRUCT_DATABASE_COMMENT, "default").eol();
+    writer.append(T_CONSTRUCT_DEFAULT, "Customer").eol();
+    writer.append(T_CONSTRUCT_TRANSACTION, "Customer").eol();
+    writer.append(T_CONSTRUCT_DATABASE, "Customer").eol();
+    writer.append(T_CONSTRUCT_FETCH_GROUP, "Customer").eol();
+    return writer.content();
+  }
+}
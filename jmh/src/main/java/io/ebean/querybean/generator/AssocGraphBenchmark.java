@@ -0,0 +1,169 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.tools.JavaFileObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Construction of a root query bean with a deep (acyclic) association chain and a cyclic
+ * association (Customer to Order to Customer) with the default initialisation of the
+ * querybean.properties=init option compared with the association graph bounded by the
+ * querybean.maxDepth option.
+ * <p>
+ * A Java analogue of the generated Kotlin: an eager association is a final field and a lazy
+ * association is a holder (Kotlin lazy) created with the bean. By default the associations of
+ * the root bean are eager and those of assoc beans are lazy. Bounded, an association is eager
+ * when the graph it creates is acyclic and no deeper than the maximum depth and otherwise lazy.
+ * <p>
+ * Run with {@code -prof gc} to compare the allocation per construction (gc.alloc.rate.norm).
+ * The path benchmark also follows the association chain to its end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssocGraphBenchmark {
+
+  private static final String PACKAGE = "bench.assoc";
+
+  @Param({"default", "2", "4"})
+  public String maxDepth;
+
+  @Param({"3", "6"})
+  public int chainDepth;
+
+  @Param({"10"})
+  public int propertyCount;
+
+  private Supplier<?> construct;
+
+  private Supplier<?> path;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    List<JavaFileObject> sources = new ArrayList<>();
+    sources.add(source("Prop", "public class Prop {\n"
+      + "  final String name;\n"
+      + "  final Object root;\n"
+      + "  public Prop(String name, Object root) { this.name = name; this.root = root; }\n"
+      + "}\n"));
+    sources.add(source("Lazy", "public class Lazy<T> {\n"
+      + "  private final java.util.function.Supplier<T> init;\n"
+      + "  private volatile T value;\n"
+      + "  public Lazy(java.util.function.Supplier<T> init) { this.init = init; }\n"
+      + "  public T get() { T v = value; return v != null ? v : (value = init.get()); }\n"
+      + "}\n"));
+
+    // root -> A1 -> A2 ... -> An (acyclic), root -> Customer -> Order -> Customer (cyclic)
+    List<String> rootAssocs = new ArrayList<>();
+    rootAssocs.add(assoc("a1", "QAssocA1", chainDepth - 1, false));
+    rootAssocs.add(assoc("customer", "QAssocCustomer", AssocGraph.UNBOUNDED, false));
+    sources.add(bean("QRoot", rootAssocs, false));
+    for (int i = 1; i <= chainDepth; i++) {
+      List<String> assocs = new ArrayList<>();
+      if (i < chainDepth) {
+        assocs.add(assoc("a" + (i + 1), "QAssocA" + (i + 1), chainDepth - i - 1, true));
+      }
+      sources.add(bean("QAssocA" + i, assocs, true));
+    }
+    List<String> customerAssocs = new ArrayList<>();
+    customerAssocs.add(assoc("order", "QAssocOrder", AssocGraph.UNBOUNDED, true));
+    sources.add(bean("QAssocCustomer", customerAssocs, true));
+    List<String> orderAssocs = new ArrayList<>();
+    orderAssocs.add(assoc("customer", "QAssocCustomer", AssocGraph.UNBOUNDED, true));
+    sources.add(bean("QAssocOrder", orderAssocs, true));
+
+    StringBuilder chain = new StringBuilder("new QRoot()");
+    for (int i = 1; i <= chainDepth; i++) {
+      chain.append(".a").append(i).append("()");
+    }
+    sources.add(source("Construct", "public class Construct implements java.util.function.Supplier<Object> {\n"
+      + "  public Object get() { return new QRoot(); }\n"
+      + "}\n"));
+    sources.add(source("Path", "public class Path implements java.util.function.Supplier<Object> {\n"
+      + "  public Object get() { return " + chain + ".property0; }\n"
+      + "}\n"));
+
+    ClassLoader loader = new CompiledClasses(sources).newClassLoader();
+    construct = (Supplier<?>) loader.loadClass(PACKAGE + ".Construct").getDeclaredConstructor().newInstance();
+    path = (Supplier<?>) loader.loadClass(PACKAGE + ".Path").getDeclaredConstructor().newInstance();
+  }
+
+  @Benchmark
+  public Object construct() {
+    return construct.get();
+  }
+
+  @Benchmark
+  public Object path() {
+    return path.get();
+  }
+
+  /**
+   * Return the association encoded as name:type:lazy.
+   */
+  private String assoc(String name, String type, int height, boolean assocBean) {
+    boolean lazy;
+    if ("default".equals(maxDepth)) {
+      lazy = assocBean;
+    } else {
+      lazy = height >= Integer.parseInt(maxDepth);
+    }
+    return name + ":" + type + ":" + lazy;
+  }
+
+  private JavaFileObject bean(String name, List<String> assocs, boolean assocBean) {
+    StringBuilder src = new StringBuilder();
+    StringBuilder init = new StringBuilder();
+    src.append("public class ").append(name).append(" {\n");
+    src.append("  final Object root;\n");
+    for (int i = 0; i < propertyCount; i++) {
+      src.append("  public final Prop property").append(i).append(";\n");
+      init.append("    property").append(i).append(" = new Prop(\"property").append(i).append("\", root);\n");
+    }
+    for (String assoc : assocs) {
+      String[] parts = assoc.split(":");
+      if (Boolean.parseBoolean(parts[2])) {
+        src.append("  private final Lazy<").append(parts[1]).append("> ").append(parts[0]).append(";\n");
+        src.append("  public ").append(parts[1]).append(" ").append(parts[0]).append("() { return ").append(parts[0]).append(".get(); }\n");
+        init.append("    ").append(parts[0]).append(" = new Lazy<>(() -> new ").append(parts[1]).append("(root));\n");
+      } else {
+        src.append("  private final ").append(parts[1]).append(" ").append(parts[0]).append(";\n");
+        src.append("  public ").append(parts[1]).append(" ").append(parts[0]).append("() { return ").append(parts[0]).append("; }\n");
+        init.append("    ").append(parts[0]).append(" = new ").append(parts[1]).append("(root);\n");
+      }
+    }
+    if (assocBean) {
+      src.append("  public ").append(name).append("(Object root) {\n");
+    } else {
+      src.append("  public ").append(name).append("() {\n");
+      src.append("    Object root = this;\n");
+    }
+    src.append("    this.root = root;\n");
+    src.append(init);
+    src.append("  }\n");
+    src.append("}\n");
+    return source(name, src.toString());
+  }
+
+  private static JavaFileObject source(String name, String body) {
+    return new SyntheticModel.Source(PACKAGE + "." + name, "package " + PACKAGE + ";\n" + body);
+  }
+}
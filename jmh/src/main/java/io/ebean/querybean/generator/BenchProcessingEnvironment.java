@@ -0,0 +1,167 @@
+package io.ebean.querybean.generator;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Processing environment for running the generator outside of javac annotation processing.
+ * <p>
+ * Generated files are discarded (only counting the characters written) and error
+ * messages fail fast as the synthetic model is expected to generate cleanly.
+ */
+class BenchProcessingEnvironment implements ProcessingEnvironment, Filer, Messager {
+
+  private final Elements elements;
+  private final Types types;
+  private final Map<String, String> options;
+
+  private long charsWritten;
+
+  BenchProcessingEnvironment(Elements elements, Types types, Map<String, String> options) {
+    this.elements = elements;
+    this.types = types;
+    this.options = options;
+  }
+
+  /**
+   * Return the number of characters written to generated files.
+   */
+  long charsWritten() {
+    return charsWritten;
+  }
+
+  @Override
+  public Map<String, String> getOptions() {
+    return options;
+  }
+
+  @Override
+  public Messager getMessager() {
+    return this;
+  }
+
+  @Override
+  public Filer getFiler() {
+    return this;
+  }
+
+  @Override
+  public Elements getElementUtils() {
+    return elements;
+  }
+
+  @Override
+  public Types getTypeUtils() {
+    return types;
+  }
+
+  @Override
+  public SourceVersion getSourceVersion() {
+    return SourceVersion.latest();
+  }
+
+  @Override
+  public Locale getLocale() {
+    return Locale.getDefault();
+  }
+
+  @Override
+  public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) {
+    return new NullFileObject(name.toString().replace('.', '/') + JavaFileObject.Kind.SOURCE.extension, JavaFileObject.Kind.SOURCE);
+  }
+
+  @Override
+  public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) {
+    return new NullFileObject(name.toString().replace('.', '/') + JavaFileObject.Kind.CLASS.extension, JavaFileObject.Kind.CLASS);
+  }
+
+  @Override
+  public FileObject createResource(JavaFileManager.Location location, CharSequence pkg, CharSequence relativeName, Element... originatingElements) {
+    return new NullFileObject(pkg.toString().replace('.', '/') + "/" + relativeName, JavaFileObject.Kind.OTHER);
+  }
+
+  @Override
+  public FileObject getResource(JavaFileManager.Location location, CharSequence pkg, CharSequence relativeName) throws FileNotFoundException {
+    throw new FileNotFoundException(relativeName.toString());
+  }
+
+  @Override
+  public void printMessage(Diagnostic.Kind kind, CharSequence msg) {
+    printMessage(kind, msg, null);
+  }
+
+  @Override
+  public void printMessage(Diagnostic.Kind kind, CharSequence msg, Element e) {
+    if (kind == Diagnostic.Kind.ERROR) {
+      throw new IllegalStateException(msg + " element:" + e);
+    }
+  }
+
+  @Override
+  public void printMessage(Diagnostic.Kind kind, CharSequence msg, Element e, AnnotationMirror a) {
+    printMessage(kind, msg, e);
+  }
+
+  @Override
+  public void printMessage(Diagnostic.Kind kind, CharSequence msg, Element e, AnnotationMirror a, AnnotationValue v) {
+    printMessage(kind, msg, e);
+  }
+
+  private class NullFileObject extends SimpleJavaFileObject {
+
+    NullFileObject(String path, Kind kind) {
+      super(URI.create("null:///" + path), kind);
+    }
+
+    @Override
+    public Writer openWriter() {
+      return new Writer() {
+        @Override
+        public void write(char[] buffer, int off, int len) {
+          charsWritten += len;
+        }
+
+        @Override
+        public void write(String str) {
+          charsWritten += str.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return new OutputStream() {
+        @Override
+        public void write(int b) {
+          charsWritten++;
+        }
+      };
+    }
+  }
+}
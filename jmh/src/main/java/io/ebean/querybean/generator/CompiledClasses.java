@@ -0,0 +1,41 @@
+package io.ebean.querybean.generator;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java sources compiled into a temporary directory that are loaded by new class loaders
+ * (such that class loading and initialisation is measured each time).
+ */
+class CompiledClasses {
+
+  private final URL[] classPath;
+
+  CompiledClasses(List<JavaFileObject> sources) throws IOException {
+    File classes = Files.createTempDirectory("querybean-classes").toFile();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+      List<String> options = Arrays.asList("-proc:none", "-nowarn", "-d", classes.getPath());
+      if (!compiler.getTask(null, fileManager, null, options, null, sources).call()) {
+        throw new IllegalStateException("Failed to compile the benchmark classes");
+      }
+    }
+    this.classPath = new URL[]{classes.toURI().toURL()};
+  }
+
+  /**
+   * Return a new class loader (with only the bootstrap loader as parent) for the compiled classes.
+   */
+  ClassLoader newClassLoader() {
+    return new URLClassLoader(classPath, null);
+  }
+}
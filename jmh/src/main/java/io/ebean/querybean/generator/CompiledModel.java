@@ -0,0 +1,62 @@
+package io.ebean.querybean.generator;
+
+import com.sun.source.util.JavacTask;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A synthetic model analysed (attributed, not generated) by javac such that the
+ * javax.lang.model elements can be used by the generator outside of annotation processing.
+ */
+class CompiledModel {
+
+  private final JavacTask task;
+
+  private final List<TypeElement> entities = new ArrayList<>();
+
+  CompiledModel(SyntheticModel model) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    List<String> options = Arrays.asList("-proc:none", "-nowarn");
+    this.task = (JavacTask) compiler.getTask(null, fileManager, diagnostics, options, null, model.sources());
+    try {
+      task.analyze();
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to analyse synthetic model", e);
+    }
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        throw new IllegalStateException("Failed to compile synthetic model: " + diagnostic);
+      }
+    }
+    for (String entityName : model.entityNames()) {
+      entities.add(task.getElements().getTypeElement(entityName));
+    }
+  }
+
+  /**
+   * Return the entity type elements.
+   */
+  List<TypeElement> entities() {
+    return entities;
+  }
+
+  /**
+   * Return a processing environment (with a Filer that discards output) for the given options.
+   */
+  BenchProcessingEnvironment processingEnv(Map<String, String> options) {
+    return new BenchProcessingEnvironment(task.getElements(), task.getTypes(), options);
+  }
+}
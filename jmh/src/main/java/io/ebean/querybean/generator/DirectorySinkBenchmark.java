@@ -0,0 +1,101 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the query bean files of 100 entities via DirectorySink compared with the previous
+ * stat, read and FileOutputStream write per file.
+ * <p>
+ * With {@code unchanged} the files already have the content (the common incremental build case),
+ * otherwise the content alternates between two versions such that every file is rewritten.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectorySinkBenchmark {
+
+  private static final int FILES = 100;
+
+  @Param({"true", "false"})
+  public boolean unchanged;
+
+  private String baseDir;
+
+  private String[] contents;
+
+  private int version;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = Files.createTempDirectory("querybean-sink-bench").toString();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 80; i++) {
+      sb.append("  lateinit var property").append(i).append(": PString<QCustomer>\n");
+    }
+    contents = new String[]{sb.toString(), sb + "\n"};
+    previous();
+    sink();
+  }
+
+  private String content() {
+    return unchanged ? contents[0] : contents[++version & 1];
+  }
+
+  /**
+   * The previous approach of File.length(), Files.readAllBytes() and a FileOutputStream write per file.
+   */
+  @Benchmark
+  public int previous() throws IOException {
+    String content = content();
+    int written = 0;
+    for (int i = 0; i < FILES; i++) {
+      File file = new File(baseDir, "previous/org/example/query/QBean" + i + ".kt");
+      byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+      if (file.length() == bytes.length && Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+        continue;
+      }
+      File dir = file.getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("failed to create " + dir);
+      }
+      try (OutputStream os = new FileOutputStream(file)) {
+        os.write(bytes);
+      }
+      written++;
+    }
+    return written;
+  }
+
+  @Benchmark
+  public int sink() throws IOException {
+    String content = content();
+    DirectorySink sink = new DirectorySink(baseDir + "/sink");
+    EntityTiming timing = new EntityTiming("org.example.Bean");
+    for (int i = 0; i < FILES; i++) {
+      sink.write(null, "org.example.query", "QBean" + i + ".kt", content, timing);
+    }
+    return sink.written();
+  }
+}
@@ -0,0 +1,57 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.lang.model.element.TypeElement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The synthetic entity model (compiled once per trial) shared by the generator benchmarks.
+ */
+@State(Scope.Benchmark)
+public class ModelState {
+
+  /**
+   * Query beans are written via the (discarding) Filer rather than to disk.
+   */
+  private static final Map<String, String> OPTIONS = Collections.singletonMap(Processor.INCREMENTAL_OPTION, "true");
+
+  @Param({"10", "100", "1000", "10000"})
+  public int entityCount;
+
+  @Param({"5"})
+  public int superclassDepth;
+
+  @Param({"20"})
+  public int scalarFields;
+
+  @Param({"4"})
+  public int associations;
+
+  private CompiledModel model;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    model = new CompiledModel(new SyntheticModel(entityCount, superclassDepth, scalarFields, associations));
+  }
+
+  /**
+   * Return a new processing context (as per compilation).
+   */
+  ProcessingContext newContext() {
+    return new ProcessingContext(model.processingEnv(OPTIONS), true);
+  }
+
+  /**
+   * Return the entities of the model.
+   */
+  List<TypeElement> entities() {
+    return model.entities();
+  }
+}
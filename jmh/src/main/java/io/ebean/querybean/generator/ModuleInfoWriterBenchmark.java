@@ -0,0 +1,35 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registering all the entities of the model and generating the ModuleInfoLoader
+ * (along with the services and manifest files, the output is discarded).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModuleInfoWriterBenchmark {
+
+  @Benchmark
+  public ProcessingContext writeModuleInfo(ModelState model) throws IOException {
+    ProcessingContext context = model.newContext();
+    for (TypeElement entity : model.entities()) {
+      context.addEntity(entity.getQualifiedName().toString(), context.findDbName(entity));
+    }
+    new SimpleModuleInfoWriter(context).write();
+    return context;
+  }
+}
@@ -0,0 +1,258 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction and property access of a query bean with lateinit properties populated
+ * reflectively (no enhancement) compared with constructor initialised {@code @JvmField val}
+ * properties (querybean.properties=init option) and properties created on first access
+ * (querybean.properties=lazy option).
+ * <p>
+ * A Java analogue of the generated Kotlin: a lateinit property read is a getter with a null
+ * check, a {@code @JvmField val} read is a plain load of a final field and a lazy property
+ * read is a getter creating the property when its backing field is null.
+ * <p>
+ * The query benchmarks construct a query bean and use 3 of its properties as a typical query
+ * does. Run with {@code -prof gc} to compare the allocation per operation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropertyInitBenchmark {
+
+  private static final Field[] LATEINIT_FIELDS = LateinitBean.class.getDeclaredFields();
+
+  private LateinitBean lateinitBean;
+
+  private InitBean initBean;
+
+  private LazyBean lazyBean;
+
+  @Setup
+  public void setup() throws Exception {
+    lateinitBean = constructLateinit();
+    initBean = constructInit();
+    lazyBean = constructLazy();
+    // accessed properties already created
+    lazyBean.getId();
+    lazyBean.getName();
+    lazyBean.getStatus();
+    lazyBean.getWhenCreated();
+    lazyBean.getCustomer();
+    lazyBean.getTotal();
+  }
+
+  @Benchmark
+  public LateinitBean constructLateinit() throws Exception {
+    LateinitBean bean = new LateinitBean();
+    for (Field field : LATEINIT_FIELDS) {
+      field.setAccessible(true);
+      field.set(bean, new Prop<>(field.getName(), bean));
+    }
+    return bean;
+  }
+
+  @Benchmark
+  public InitBean constructInit() {
+    return new InitBean();
+  }
+
+  @Benchmark
+  public LazyBean constructLazy() {
+    return new LazyBean();
+  }
+
+  @Benchmark
+  public void queryInit(Blackhole blackhole) {
+    InitBean bean = new InitBean();
+    blackhole.consume(bean.name);
+    blackhole.consume(bean.status);
+    blackhole.consume(bean.customer);
+  }
+
+  @Benchmark
+  public void queryLazy(Blackhole blackhole) {
+    LazyBean bean = new LazyBean();
+    blackhole.consume(bean.getName());
+    blackhole.consume(bean.getStatus());
+    blackhole.consume(bean.getCustomer());
+  }
+
+  @Benchmark
+  public void accessLateinit(Blackhole blackhole) {
+    LateinitBean bean = lateinitBean;
+    blackhole.consume(bean.getId());
+    blackhole.consume(bean.getName());
+    blackhole.consume(bean.getStatus());
+    blackhole.consume(bean.getWhenCreated());
+    blackhole.consume(bean.getCustomer());
+    blackhole.consume(bean.getTotal());
+  }
+
+  @Benchmark
+  public void accessInit(Blackhole blackhole) {
+    InitBean bean = initBean;
+    blackhole.consume(bean.id);
+    blackhole.consume(bean.name);
+    blackhole.consume(bean.status);
+    blackhole.consume(bean.whenCreated);
+    blackhole.consume(bean.customer);
+    blackhole.consume(bean.total);
+  }
+
+  @Benchmark
+  public void accessLazy(Blackhole blackhole) {
+    LazyBean bean = lazyBean;
+    blackhole.consume(bean.getId());
+    blackhole.consume(bean.getName());
+    blackhole.consume(bean.getStatus());
+    blackhole.consume(bean.getWhenCreated());
+    blackhole.consume(bean.getCustomer());
+    blackhole.consume(bean.getTotal());
+  }
+
+  public static class Prop<R> {
+
+    final String name;
+    final R root;
+
+    Prop(String name, R root) {
+      this.name = name;
+      this.root = root;
+    }
+  }
+
+  /**
+   * Analogue of {@code lateinit var} properties.
+   */
+  public static class LateinitBean {
+
+    private Prop<LateinitBean> id;
+    private Prop<LateinitBean> version;
+    private Prop<LateinitBean> whenCreated;
+    private Prop<LateinitBean> whenModified;
+    private Prop<LateinitBean> name;
+    private Prop<LateinitBean> status;
+    private Prop<LateinitBean> customer;
+    private Prop<LateinitBean> total;
+    private Prop<LateinitBean> notes;
+    private Prop<LateinitBean> lines;
+    private Prop<LateinitBean> shipments;
+    private Prop<LateinitBean> deliveryDate;
+
+    private static <T> T check(T value, String name) {
+      if (value == null) {
+        throw new IllegalStateException("lateinit property " + name + " has not been initialized");
+      }
+      return value;
+    }
+
+    public Prop<LateinitBean> getId() {
+      return check(id, "id");
+    }
+
+    public Prop<LateinitBean> getName() {
+      return check(name, "name");
+    }
+
+    public Prop<LateinitBean> getStatus() {
+      return check(status, "status");
+    }
+
+    public Prop<LateinitBean> getWhenCreated() {
+      return check(whenCreated, "whenCreated");
+    }
+
+    public Prop<LateinitBean> getCustomer() {
+      return check(customer, "customer");
+    }
+
+    public Prop<LateinitBean> getTotal() {
+      return check(total, "total");
+    }
+  }
+
+  /**
+   * Analogue of constructor initialised {@code @JvmField val} properties.
+   */
+  public static class InitBean {
+
+    public final Prop<InitBean> id = new Prop<>("id", this);
+    public final Prop<InitBean> version = new Prop<>("version", this);
+    public final Prop<InitBean> whenCreated = new Prop<>("whenCreated", this);
+    public final Prop<InitBean> whenModified = new Prop<>("whenModified", this);
+    public final Prop<InitBean> name = new Prop<>("name", this);
+    public final Prop<InitBean> status = new Prop<>("status", this);
+    public final Prop<InitBean> customer = new Prop<>("customer", this);
+    public final Prop<InitBean> total = new Prop<>("total", this);
+    public final Prop<InitBean> notes = new Prop<>("notes", this);
+    public final Prop<InitBean> lines = new Prop<>("lines", this);
+    public final Prop<InitBean> shipments = new Prop<>("shipments", this);
+    public final Prop<InitBean> deliveryDate = new Prop<>("deliveryDate", this);
+  }
+
+  /**
+   * Analogue of properties created on first access via a nullable backing field.
+   */
+  public static class LazyBean {
+
+    private Prop<LazyBean> id;
+    private Prop<LazyBean> version;
+    private Prop<LazyBean> whenCreated;
+    private Prop<LazyBean> whenModified;
+    private Prop<LazyBean> name;
+    private Prop<LazyBean> status;
+    private Prop<LazyBean> customer;
+    private Prop<LazyBean> total;
+    private Prop<LazyBean> notes;
+    private Prop<LazyBean> lines;
+    private Prop<LazyBean> shipments;
+    private Prop<LazyBean> deliveryDate;
+
+    public Prop<LazyBean> getId() {
+      Prop<LazyBean> p = id;
+      return p != null ? p : (id = new Prop<>("id", this));
+    }
+
+    public Prop<LazyBean> getName() {
+      Prop<LazyBean> p = name;
+      return p != null ? p : (name = new Prop<>("name", this));
+    }
+
+    public Prop<LazyBean> getStatus() {
+      Prop<LazyBean> p = status;
+      return p != null ? p : (status = new Prop<>("status", this));
+    }
+
+    public Prop<LazyBean> getWhenCreated() {
+      Prop<LazyBean> p = whenCreated;
+      return p != null ? p : (whenCreated = new Prop<>("whenCreated", this));
+    }
+
+    public Prop<LazyBean> getCustomer() {
+      Prop<LazyBean> p = customer;
+      return p != null ? p : (customer = new Prop<>("customer", this));
+    }
+
+    public Prop<LazyBean> getTotal() {
+      Prop<LazyBean> p = total;
+      return p != null ? p : (total = new Prop<>("total", this));
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathering the fields and resolving the property types of all the entities of the model.
+ * <p>
+ * The cold variant uses a new ProcessingContext per operation (the cost per compilation)
+ * and the warm variant reuses one (with its caches populated).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyTypeBenchmark {
+
+  private ProcessingContext warmContext;
+
+  @Setup(Level.Trial)
+  public void setup(ModelState model) {
+    warmContext = model.newContext();
+    resolveAll(warmContext, model, null);
+  }
+
+  @Benchmark
+  public void resolveCold(ModelState model, Blackhole blackhole) {
+    ProcessingContext context = model.newContext();
+    context.startRound();
+    resolveAll(context, model, blackhole);
+  }
+
+  @Benchmark
+  public void resolveWarm(ModelState model, Blackhole blackhole) {
+    resolveAll(warmContext, model, blackhole);
+  }
+
+  private static void resolveAll(ProcessingContext context, ModelState model, Blackhole blackhole) {
+    for (TypeElement entity : model.entities()) {
+      for (VariableElement field : context.allFields(entity)) {
+        PropertyType type = context.getPropertyType(field);
+        if (blackhole != null) {
+          blackhole.consume(type);
+        }
+      }
+    }
+  }
+}
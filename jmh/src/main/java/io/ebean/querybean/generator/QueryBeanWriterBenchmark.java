@@ -0,0 +1,37 @@
+package io.ebean.querybean.generator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the root and assoc query beans for all the entities of the model
+ * (gathering the properties and rendering, the output is discarded).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBeanWriterBenchmark {
+
+  @Benchmark
+  public ProcessingContext writeQueryBeans(ModelState model) throws IOException {
+    ProcessingContext context = model.newContext();
+    context.startRound();
+    for (TypeElement entity : model.entities()) {
+      SimpleQueryBeanWriter beanWriter = new SimpleQueryBeanWriter(new ElementBeanModel(entity, context), context);
+      beanWriter.gather();
+      beanWriter.write();
+    }
+    return context;
+  }
+}
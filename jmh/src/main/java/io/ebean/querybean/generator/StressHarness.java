@@ -0,0 +1,248 @@
+package io.ebean.querybean.generator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * End to end compile of synthetic models of increasing size with javac running the processors.
+ * <p>
+ * Records per scale point the wall time, peak heap, GC count / time and the generated files and bytes,
+ * and fails (exit code 1) when the time or peak heap per entity grows superlinearly, that is, exceeds
+ * the lowest per entity value of the smaller scale points by more than the threshold ratio.
+ * <pre>
+ *
+ *   java -Xmx6g -cp target/benchmarks.jar io.ebean.querybean.generator.StressHarness \
+ *     [--threshold 2.0] [--csv results.csv] [-Aquerybean.parallelism=4 ...] [100 1000 5000 10000 20000]
+ *
+ * </pre>
+ */
+public class StressHarness {
+
+  private static final int[] DEFAULT_SIZES = {100, 1000, 5000, 10000, 20000};
+
+  private final List<String> processorOptions = new ArrayList<>();
+
+  private final List<Result> results = new ArrayList<>();
+
+  private double threshold = 2.0;
+
+  private File csv;
+
+  public static void main(String[] args) throws Exception {
+    StressHarness harness = new StressHarness();
+    int[] sizes = harness.parse(args);
+    // warm up the compiler and processor such that the first scale point is not dominated by JIT
+    harness.compile(sizes[0]);
+    for (int size : sizes) {
+      harness.results.add(harness.compile(size));
+    }
+    boolean superlinear = harness.report(System.out);
+    if (superlinear) {
+      System.exit(1);
+    }
+  }
+
+  private int[] parse(String[] args) {
+    List<Integer> sizes = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if ("--threshold".equals(arg)) {
+        threshold = Double.parseDouble(args[++i]);
+      } else if ("--csv".equals(arg)) {
+        csv = new File(args[++i]);
+      } else if (arg.startsWith("-A")) {
+        processorOptions.add(arg);
+      } else {
+        sizes.add(Integer.parseInt(arg));
+      }
+    }
+    if (sizes.isEmpty()) {
+      return DEFAULT_SIZES;
+    }
+    return sizes.stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
+
+  /**
+   * Compile (annotation processing only) a synthetic model of the given number of entities.
+   */
+  private Result compile(int entityCount) throws IOException {
+
+    SyntheticModel model = new SyntheticModel(entityCount, 5, 20, 4);
+    Path outDir = Files.createTempDirectory("querybean-stress");
+    File generated = new File(outDir.toFile(), "generated/source/kapt/main");
+    File sources = new File(outDir.toFile(), "generated/sources/annotationProcessor");
+    File classes = new File(outDir.toFile(), "classes");
+    mkdirs(generated, sources, classes);
+
+    List<String> options = new ArrayList<>(Arrays.asList("-proc:only", "-nowarn",
+      "-s", sources.getPath(), "-d", classes.getPath(), "-Akapt.kotlin.generated=" + generated.getPath()));
+    options.addAll(processorOptions);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, model.sources());
+    List<AbstractProcessor> processors = Arrays.asList(new Processor(), new ModuleInfoProcessor());
+    task.setProcessors(processors);
+
+    System.gc();
+    long gcCount = gcCount();
+    long gcMillis = gcMillis();
+    resetPeakHeap();
+    long start = System.nanoTime();
+    boolean success = task.call();
+    long wallNanos = System.nanoTime() - start;
+
+    Result result = new Result(entityCount);
+    result.wallMillis = wallNanos / 1_000_000;
+    result.peakHeap = peakHeap();
+    result.gcCount = gcCount() - gcCount;
+    result.gcMillis = gcMillis() - gcMillis;
+    fileManager.close();
+
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        throw new IllegalStateException("Failed to compile synthetic model: " + diagnostic);
+      }
+    }
+    if (!success) {
+      throw new IllegalStateException("Failed to compile synthetic model of " + entityCount + " entities");
+    }
+    try (Stream<Path> files = Files.walk(outDir)) {
+      files.filter(Files::isRegularFile).forEach(file -> result.addFile(file.toFile().length()));
+    }
+    delete(outDir);
+    return result;
+  }
+
+  private static void mkdirs(File... dirs) throws IOException {
+    for (File dir : dirs) {
+      if (!dir.mkdirs()) {
+        throw new IOException("failed to create directory " + dir);
+      }
+    }
+  }
+
+  private static void delete(Path dir) throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Return the sum of the peak usage of the heap pools (an upper bound as the pools peak at different times).
+   */
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  /**
+   * Print the results returning true if superlinear growth was detected.
+   */
+  private boolean report(PrintStream out) throws IOException {
+
+    double bestTime = Double.MAX_VALUE;
+    double bestHeap = Double.MAX_VALUE;
+    boolean superlinear = false;
+    StringBuilder csvContent = new StringBuilder("entities,wallMillis,peakHeapBytes,gcCount,gcMillis,files,bytes,timeRatio,heapRatio\n");
+    out.println();
+    out.printf("%9s %10s %12s %8s %8s %8s %12s %10s %10s%n",
+      "entities", "wall ms", "peak heap MB", "gc count", "gc ms", "files", "bytes", "time ratio", "heap ratio");
+    for (Result result : results) {
+      bestTime = Math.min(bestTime, result.timePerEntity());
+      bestHeap = Math.min(bestHeap, result.heapPerEntity());
+      double timeRatio = result.timePerEntity() / bestTime;
+      double heapRatio = result.heapPerEntity() / bestHeap;
+      boolean flagged = timeRatio > threshold || heapRatio > threshold;
+      superlinear |= flagged;
+      out.printf("%9d %10d %12d %8d %8d %8d %12d %10.2f %10.2f%s%n",
+        result.entities, result.wallMillis, result.peakHeap >> 20, result.gcCount, result.gcMillis,
+        result.files, result.bytes, timeRatio, heapRatio, flagged ? "  SUPERLINEAR" : "");
+      csvContent.append(result.entities).append(',').append(result.wallMillis).append(',').append(result.peakHeap)
+        .append(',').append(result.gcCount).append(',').append(result.gcMillis).append(',').append(result.files)
+        .append(',').append(result.bytes).append(',').append(String.format("%.3f,%.3f", timeRatio, heapRatio)).append('\n');
+    }
+    out.printf("%nratios are per entity relative to the lowest of the smaller scale points, threshold %.2f%n", threshold);
+    if (csv != null) {
+      Files.write(csv.toPath(), csvContent.toString().getBytes());
+    }
+    return superlinear;
+  }
+
+  private static class Result {
+
+    final int entities;
+    long wallMillis;
+    long peakHeap;
+    long gcCount;
+    long gcMillis;
+    long files;
+    long bytes;
+
+    Result(int entities) {
+      this.entities = entities;
+    }
+
+    void addFile(long length) {
+      files++;
+      bytes += length;
+    }
+
+    double timePerEntity() {
+      return (double) wallMillis / entities;
+    }
+
+    double heapPerEntity() {
+      return (double) peakHeap / entities;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package io.ebean.querybean.generator;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the Java sources of a synthetic entity model.
+ * <p>
+ * The entities extend a chain of mapped superclasses and have a mix of scalar, enum,
+ * embedded, json, array and association properties (ManyToOne and OneToMany) to other entities.
+ */
+class SyntheticModel {
+
+  /**
+   * Number of entities per package.
+   */
+  private static final int PACKAGE_SIZE = 100;
+
+  private static final String[] SCALAR_TYPES = {
+    "String",
+    "Long",
+    "Integer",
+    "boolean",
+    "java.math.BigDecimal",
+    "java.time.Instant",
+    "java.time.LocalDate",
+    "java.util.UUID",
+    "bench.domain.base.Status",
+    "bench.domain.base.Money",
+    "bench.domain.base.Plain",
+    "bench.domain.base.Address",
+  };
+
+  private final int entityCount;
+  private final int superclassDepth;
+  private final int scalarFields;
+  private final int associations;
+
+  private final List<JavaFileObject> sources = new ArrayList<>();
+  private final List<String> entityNames = new ArrayList<>();
+
+  /**
+   * Create the model.
+   *
+   * @param entityCount     the number of entities
+   * @param superclassDepth the depth of the mapped superclass chain each entity extends
+   * @param scalarFields    the number of non association fields per entity
+   * @param associations    the number of ManyToOne and the number of OneToMany properties per entity
+   */
+  SyntheticModel(int entityCount, int superclassDepth, int scalarFields, int associations) {
+    this.entityCount = entityCount;
+    this.superclassDepth = superclassDepth;
+    this.scalarFields = scalarFields;
+    this.associations = associations;
+    addAnnotations();
+    addBaseTypes();
+    for (int i = 0; i < entityCount; i++) {
+      addEntity(i);
+    }
+  }
+
+  /**
+   * Return the sources of the model (including the annotations).
+   */
+  List<JavaFileObject> sources() {
+    return sources;
+  }
+
+  /**
+   * Return the fully qualified names of the entities.
+   */
+  List<String> entityNames() {
+    return entityNames;
+  }
+
+  private void addAnnotations() {
+    annotation("javax.persistence", "Entity", "");
+    annotation("javax.persistence", "Embeddable", "");
+    annotation("javax.persistence", "MappedSuperclass", "");
+    annotation("javax.persistence", "Inheritance", "");
+    annotation("javax.persistence", "Converter", "");
+    annotation("io.ebean.annotation", "EbeanComponent", "");
+    annotation("javax.persistence", "ManyToOne", "Class<?> targetEntity() default void.class;");
+    annotation("javax.persistence", "OneToMany", "Class<?> targetEntity() default void.class;");
+    annotation("io.ebean.annotation", "DbJson", "");
+    annotation("io.ebean.annotation", "DbArray", "");
+    annotation("io.ebean.annotation", "DbName", "String value();");
+  }
+
+  private void annotation(String pkg, String name, String body) {
+    add(pkg + "." + name, "package " + pkg + ";\n"
+      + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+      + "public @interface " + name + " { " + body + " }\n");
+  }
+
+  private void addBaseTypes() {
+    add("bench.domain.base.Status", "package bench.domain.base;\npublic enum Status { NEW, ACTIVE, INACTIVE }\n");
+    add("bench.domain.base.Money", "package bench.domain.base;\npublic class Money implements Comparable<Money> {\n  public int compareTo(Money o) { return 0; }\n}\n");
+    add("bench.domain.base.Plain", "package bench.domain.base;\npublic class Plain {}\n");
+    add("bench.domain.base.Address", "package bench.domain.base;\n@javax.persistence.Embeddable\npublic class Address {\n  String line1;\n  String city;\n  String postcode;\n}\n");
+    for (int depth = 0; depth < superclassDepth; depth++) {
+      StringBuilder src = new StringBuilder();
+      src.append("package bench.domain.base;\n");
+      src.append("@javax.persistence.MappedSuperclass\n");
+      src.append("public abstract class Base").append(depth);
+      if (depth > 0) {
+        src.append(" extends Base").append(depth - 1);
+      }
+      src.append(" {\n");
+      src.append("  Long id").append(depth).append(";\n");
+      src.append("  long version").append(depth).append(";\n");
+      src.append("  java.time.Instant whenModified").append(depth).append(";\n");
+      src.append("  static String IGNORED").append(depth).append(";\n");
+      src.append("}\n");
+      add("bench.domain.base.Base" + depth, src.toString());
+    }
+  }
+
+  private String entityName(int index) {
+    return "bench.domain.p" + (index / PACKAGE_SIZE) + ".E" + index;
+  }
+
+  private void addEntity(int index) {
+
+    String fullName = entityName(index);
+    String[] split = Split.split(fullName);
+
+    StringBuilder src = new StringBuilder();
+    src.append("package ").append(split[0]).append(";\n");
+    src.append("@javax.persistence.Entity\n");
+    if (index % 10 == 9) {
+      src.append("@io.ebean.annotation.DbName(\"db").append(index % 3).append("\")\n");
+    }
+    src.append("public class ").append(split[1]);
+    if (superclassDepth > 0) {
+      src.append(" extends bench.domain.base.Base").append(superclassDepth - 1);
+    }
+    src.append(" {\n");
+    for (int i = 0; i < scalarFields; i++) {
+      String type = SCALAR_TYPES[(index + i) % SCALAR_TYPES.length];
+      src.append("  ").append(type).append(" field").append(i).append(";\n");
+    }
+    src.append("  @io.ebean.annotation.DbJson java.util.Map<String, Object> json;\n");
+    src.append("  @io.ebean.annotation.DbArray java.util.List<String> tags;\n");
+    for (int i = 0; i < associations; i++) {
+      src.append("  @javax.persistence.ManyToOne ").append(entityName((index + 7 * i + 1) % entityCount)).append(" one").append(i).append(";\n");
+      src.append("  @javax.persistence.OneToMany java.util.List<").append(entityName((index + 13 * i + 3) % entityCount)).append("> many").append(i).append(";\n");
+    }
+    src.append("}\n");
+
+    entityNames.add(fullName);
+    add(fullName, src.toString());
+  }
+
+  private void add(String className, String source) {
+    sources.add(new Source(className, source));
+  }
+
+  static class Source extends SimpleJavaFileObject {
+
+    private final String source;
+
+    Source(String className, String source) {
+      super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package io.ebean.querybean;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a projection of an entity to the annotated DTO.
+ * <p>
+ * The constructor parameters of the DTO (for example the properties of a Kotlin data class)
+ * are validated against the properties of the entity and a {@code <Dto>Projection} object is
+ * generated with the select clause of the projected properties and a mapping of the entity
+ * bean to the DTO without reflection.
+ * <p>
+ * The query is an ORM query loading partially populated entity beans (selecting only the
+ * projected columns) that are then mapped to the DTO. No sql or ResultSet mapping is generated.
+ * <p>
+ * The annotation is only needed at compile time, for example with the generator as a
+ * {@code compileOnly} dependency as well as on the kapt path. Alternatively an application
+ * annotation with a {@code value} class attribute is used via the querybean.projection option.
+ *
+ * <pre>{@code
+ *
+ *   @Projection(Customer::class)
+ *   data class CustomerName(val id: Long, val name: String?)
+ *
+ *   val names = CustomerNameProjection.findList(database, "name like ?", "Rob%")
+ *
+ * }</pre>
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Projection {
+
+  /**
+   * The entity that is projected.
+   */
+  Class<?> value();
+}
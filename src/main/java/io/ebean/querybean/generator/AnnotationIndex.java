@@ -0,0 +1,138 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the annotations of interest on each element.
+ * <p>
+ * The annotation types are resolved per round and compared by identity, falling back to the
+ * qualified name (a JDK 8 javac round can use new symbols for the same types). The annotation
+ * mirrors of each element are scanned once into a bit set that all the checks then use.
+ * <p>
+ * Elements are held per round (cleared at the start of each round).
+ */
+class AnnotationIndex implements Constants {
+
+  static final int ENTITY_BIT = 1;
+  static final int EMBEDDABLE_BIT = 1 << 1;
+  static final int MAPPED_SUPERCLASS_BIT = 1 << 2;
+  static final int INHERITANCE_BIT = 1 << 3;
+  static final int DBJSON_BIT = 1 << 4;
+  static final int DBARRAY_BIT = 1 << 5;
+
+  /**
+   * An annotation with an explicit targetEntity attribute (e.g. OneToMany(targetEntity = ...)).
+   */
+  static final int TARGET_ENTITY_BIT = 1 << 6;
+
+  /**
+   * The projection annotation (configurable via the querybean.projection option).
+   */
+  static final int PROJECTION_BIT = 1 << 7;
+
+  /**
+   * Kotlin non-null (on the fields and parameters of the kapt stubs).
+   */
+  static final int NOT_NULL_BIT = 1 << 8;
+
+  private final Map<String, Integer> names = new HashMap<>();
+
+  /**
+   * The bits of the annotation types seen this round (0 for annotations not of interest).
+   */
+  private final Map<Element, Integer> types = new HashMap<>();
+
+  private final Map<Element, Integer> index = new HashMap<>();
+
+  private final Elements elementUtils;
+
+  AnnotationIndex(Elements elementUtils, String projection) {
+    this.elementUtils = elementUtils;
+    names.put(ENTITY, ENTITY_BIT);
+    names.put(EMBEDDABLE, EMBEDDABLE_BIT);
+    names.put(MAPPED_SUPERCLASS, MAPPED_SUPERCLASS_BIT);
+    names.put(INHERITANCE, INHERITANCE_BIT);
+    names.put(DBJSON, DBJSON_BIT);
+    names.put(DBJSONB, DBJSON_BIT);
+    names.put(DBARRAY, DBARRAY_BIT);
+    names.put(projection, PROJECTION_BIT);
+    names.put(NOT_NULL, NOT_NULL_BIT);
+    resolve();
+  }
+
+  private void resolve() {
+    for (Map.Entry<String, Integer> entry : names.entrySet()) {
+      TypeElement type = elementUtils.getTypeElement(entry.getKey());
+      if (type != null) {
+        types.put(type, entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Clear the elements indexed in the previous round and resolve the annotation types again.
+   */
+  void clear() {
+    index.clear();
+    types.clear();
+    resolve();
+  }
+
+  /**
+   * Return true if the element has any of the given annotation bits.
+   */
+  boolean has(Element element, int bits) {
+    return element != null && (bits(element) & bits) != 0;
+  }
+
+  private int bits(Element element) {
+    List<? extends AnnotationMirror> mirrors = element.getAnnotationMirrors();
+    if (mirrors.isEmpty()) {
+      // most fields have no annotations, not worth indexing
+      return 0;
+    }
+    Integer bits = index.get(element);
+    if (bits == null) {
+      bits = scan(mirrors);
+      index.put(element, bits);
+    }
+    return bits;
+  }
+
+  private int scan(List<? extends AnnotationMirror> mirrors) {
+    int bits = 0;
+    for (AnnotationMirror mirror : mirrors) {
+      bits |= bit(mirror.getAnnotationType().asElement());
+      if (hasTargetEntity(mirror)) {
+        bits |= TARGET_ENTITY_BIT;
+      }
+    }
+    return bits;
+  }
+
+  private int bit(Element annotationType) {
+    Integer bit = types.get(annotationType);
+    if (bit == null) {
+      // not the resolved instance, compare by name
+      bit = names.getOrDefault(((TypeElement) annotationType).getQualifiedName().toString(), 0);
+      types.put(annotationType, bit);
+    }
+    return bit;
+  }
+
+  private static boolean hasTargetEntity(AnnotationMirror mirror) {
+    for (ExecutableElement attribute : mirror.getElementValues().keySet()) {
+      if (attribute.getSimpleName().contentEquals("targetEntity")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
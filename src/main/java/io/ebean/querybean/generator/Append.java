@@ -1,51 +1,61 @@
 package io.ebean.querybean.generator;
 
-import java.io.IOException;
-import java.io.Writer;
-
 /**
- * Helper that wraps a writer with some useful methods to append content.
+ * Helper that wraps a buffer with some useful methods to append content.
  */
 class Append {
 
-  private final Writer writer;
+  /**
+   * Buffer reused per thread for rendering the query beans.
+   */
+  private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+  private final StringBuilder buffer;
 
-  Append(Writer writer) {
-    this.writer = writer;
+  Append(StringBuilder buffer) {
+    this.buffer = buffer;
   }
 
-  Append append(String content) {
-    try {
-      writer.append(content);
-      return this;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  /**
+   * Return an Append using the (cleared) buffer of the current thread.
+   */
+  static Append reuseBuffer() {
+    StringBuilder buffer = BUFFER.get();
+    buffer.setLength(0);
+    return new Append(buffer);
   }
 
-  void close() {
-    try {
-      writer.flush();
-      writer.close();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  Append append(String content) {
+    buffer.append(content);
+    return this;
   }
 
   Append eol() {
-    try {
-      writer.append("\n");
-      return this;
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    buffer.append('\n');
+    return this;
+  }
+
+  /**
+   * Append the template content with an argument.
+   */
+  Append append(Template template, String arg0) {
+    template.append(buffer, arg0);
+    return this;
+  }
+
+  /**
+   * Append the template content with two arguments.
+   */
+  Append append(Template template, String arg0, String arg1) {
+    template.append(buffer, arg0, arg1);
+    return this;
   }
 
   /**
-   * Append content with formatted arguments.
+   * Return the content appended.
    */
-  Append append(String format, Object... args) {
-    return append(String.format(format, args));
+  String content() {
+    return buffer.toString();
   }
 
 }
@@ -0,0 +1,174 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.Element;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Collects the generated source files and writes them as a single source archive (srcjar).
+ * <p>
+ * With thousands of entities this replaces thousands of files across many query and
+ * query/assoc directories by a single file that kotlinc and build tools read directly.
+ * <p>
+ * The entries are sorted by path and have a fixed timestamp such that the archive is
+ * reproducible. It is written when processing is complete and only when its content changed.
+ * <p>
+ * Each entry has the class it is generated from as its comment. On a partial compile the
+ * entries of the existing archive are kept for the classes not compiled that still generate
+ * sources (such that the archive matches the ModuleInfo with the entities added back).
+ */
+class ArchiveSink implements OutputSink {
+
+  /**
+   * Fixed (local) time for the entries, 1980-02-01 as the earliest safe zip (DOS) date.
+   */
+  private static final long ENTRY_TIME = new GregorianCalendar(1980, 1, 1, 0, 0, 0).getTimeInMillis();
+
+  private final File archive;
+
+  /**
+   * Test if a class not compiled still generates sources (exists and is still an entity).
+   */
+  private final Predicate<String> retain;
+
+  private final Map<String, Entry> entries = new TreeMap<>();
+
+  /**
+   * The classes the entries are generated from in this compile.
+   */
+  private final Set<String> origins = new HashSet<>();
+
+  private int written;
+
+  private int skipped;
+
+  ArchiveSink(File archive, Predicate<String> retain) {
+    this.archive = archive;
+    this.retain = retain;
+  }
+
+  /**
+   * Add the source file as an entry of the archive.
+   */
+  @Override
+  public synchronized void write(Element origin, String packageName, String fileName, String content, EntityTiming timing) {
+    long start = System.nanoTime();
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    entries.put(packageName.replace('.', '/') + "/" + fileName, new Entry(timing.name(), bytes));
+    origins.add(timing.name());
+    timing.write(System.nanoTime() - start, bytes.length);
+  }
+
+  /**
+   * Write the archive unless the existing archive has exactly the same content.
+   * <p>
+   * An existing archive is also rewritten when no sources were generated in this compile
+   * (only deleted entities) such that the entries of the deleted classes are removed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (archive.isFile()) {
+      readExisting();
+    } else if (entries.isEmpty()) {
+      return;
+    }
+    byte[] content = zip();
+    if (archive.length() == content.length && Arrays.equals(Files.readAllBytes(archive.toPath()), content)) {
+      skipped = entries.size();
+      return;
+    }
+    File dir = archive.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("failed to create directories for:" + dir.getAbsolutePath());
+    }
+    try (OutputStream os = new FileOutputStream(archive)) {
+      os.write(content);
+    }
+    written = entries.size();
+  }
+
+  /**
+   * Add back the existing entries of the classes not compiled that still generate sources.
+   * <p>
+   * Entries without an origin (written by a prior generator version) are dropped.
+   */
+  private void readExisting() throws IOException {
+    Map<String, Boolean> retained = new TreeMap<>();
+    try (ZipFile zip = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        String origin = zipEntry.getComment();
+        if (origin == null || origins.contains(origin) || !retained.computeIfAbsent(origin, retain::test)) {
+          continue;
+        }
+        try (InputStream is = zip.getInputStream(zipEntry)) {
+          entries.putIfAbsent(zipEntry.getName(), new Entry(origin, readAll(is)));
+        }
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    byte[] chunk = new byte[4096];
+    int len;
+    while ((len = is.read(chunk)) != -1) {
+      buffer.write(chunk, 0, len);
+    }
+    return buffer.toByteArray();
+  }
+
+  private byte[] zip() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(entries.size() * 1024);
+    try (ZipOutputStream zip = new ZipOutputStream(buffer)) {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        zipEntry.setTime(ENTRY_TIME);
+        zipEntry.setComment(entry.getValue().origin);
+        zip.putNextEntry(zipEntry);
+        zip.write(entry.getValue().content);
+        zip.closeEntry();
+      }
+    }
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public synchronized int written() {
+    return written;
+  }
+
+  @Override
+  public synchronized int skipped() {
+    return skipped;
+  }
+
+  private static final class Entry {
+
+    final String origin;
+    final byte[] content;
+
+    Entry(String origin, byte[] content) {
+      this.origin = origin;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The association graph of the entity (and embeddable) beans built on demand from the
+ * element model (with the querybean.maxDepth option).
+ * <p>
+ * For each bean this determines the longest association path such that association
+ * properties are initialised eagerly only when the graph they create is acyclic and no
+ * deeper than the maximum depth. Beans that are part of a cycle are collected and logged.
+ * <p>
+ * This reads the javax.lang.model elements and must run on the processor thread.
+ */
+class AssocGraph {
+
+  /**
+   * Height of a bean that reaches a cycle (unbounded association paths).
+   */
+  static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private final ProcessingContext ctx;
+
+  private final Map<String, Integer> heights = new HashMap<>();
+
+  /**
+   * The beans on the current path (in order) to detect cycles.
+   */
+  private final Set<String> path = new LinkedHashSet<>();
+
+  private final Set<String> cyclic = new TreeSet<>();
+
+  AssocGraph(ProcessingContext ctx) {
+    this.ctx = ctx;
+  }
+
+  /**
+   * Return the longest association path from the given bean or UNBOUNDED when it reaches a cycle.
+   */
+  int height(String bean) {
+    Integer known = heights.get(bean);
+    if (known != null) {
+      return known;
+    }
+    if (!path.add(bean)) {
+      cycle(bean);
+      return UNBOUNDED;
+    }
+    int height = 0;
+    for (String target : targets(bean)) {
+      int targetHeight = height(target);
+      // continue when unbounded such that all the cycles are found
+      height = (targetHeight == UNBOUNDED || height == UNBOUNDED) ? UNBOUNDED : Math.max(height, targetHeight + 1);
+    }
+    path.remove(bean);
+    heights.put(bean, height);
+    return height;
+  }
+
+  /**
+   * Return the beans that are part of an association cycle.
+   */
+  Set<String> cyclic() {
+    return cyclic;
+  }
+
+  /**
+   * Collect the beans of the cycle from the given bean to the end of the current path.
+   */
+  private void cycle(String bean) {
+    boolean inCycle = false;
+    for (String member : path) {
+      inCycle = inCycle || member.equals(bean);
+      if (inCycle) {
+        cyclic.add(member);
+      }
+    }
+  }
+
+  /**
+   * Return the associated beans of the given bean.
+   */
+  private List<String> targets(String bean) {
+    List<String> targets = new ArrayList<>();
+    TypeElement element = ctx.typeElement(bean);
+    if (element != null) {
+      for (VariableElement field : ctx.allFields(element)) {
+        PropertyType type = ctx.getPropertyType(field);
+        if (type instanceof PropertyTypeAssoc) {
+          targets.add(((PropertyTypeAssoc) type).targetType());
+        }
+      }
+    }
+    return targets;
+  }
+}
@@ -0,0 +1,46 @@
+package io.ebean.querybean.generator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The entity or embeddable bean that query beans are generated for.
+ * <p>
+ * Read from the javax.lang.model elements (annotation processor) or the KSP symbols
+ * and written with the bean as the origin of the generated source.
+ */
+interface BeanModel {
+
+  /**
+   * Return the fully qualified name of the bean.
+   */
+  String fullName();
+
+  /**
+   * Return true if the bean is an entity.
+   */
+  boolean isEntity();
+
+  /**
+   * Return true if the bean is embeddable.
+   */
+  boolean isEmbeddable();
+
+  /**
+   * Return the DbName of the bean (null for the default database).
+   */
+  String dbName();
+
+  /**
+   * Return the query bean properties including those of mapped superclasses.
+   * <p>
+   * This reads the elements (or symbols) and must run on the processor thread.
+   * </p>
+   */
+  List<PropertyMeta> properties(EntityTiming timing);
+
+  /**
+   * Write the generated source (originating from the bean).
+   */
+  void writeSource(String packageName, String fileName, String content, EntityTiming timing) throws IOException;
+}
@@ -0,0 +1,128 @@
+package io.ebean.querybean.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per round and per entity timings of the generation phases (with the querybean.timing option).
+ * <p>
+ * Written as a JSON report under the build directory with a summary of the slowest entities logged.
+ */
+class BuildTimings {
+
+  private static final String REPORT_NAME = "querybean-timing.json";
+
+  /**
+   * The report file or null when timing is not enabled.
+   */
+  private final File reportFile;
+
+  /**
+   * The number of slowest entities logged.
+   */
+  private final int top;
+
+  private final List<long[]> rounds = new ArrayList<>();
+
+  private final List<EntityTiming> entities = new ArrayList<>();
+
+  /**
+   * Create given the option value (true or the report file path) and generated sources directory.
+   */
+  BuildTimings(String option, int top, String generatedSourcesDir) {
+    this.reportFile = reportFile(option, generatedSourcesDir);
+    this.top = top;
+  }
+
+  private static File reportFile(String option, String generatedSourcesDir) {
+    if (option == null || "false".equalsIgnoreCase(option)) {
+      return null;
+    }
+    if ("true".equalsIgnoreCase(option)) {
+      return new File(ProcessingContext.buildDir(generatedSourcesDir), REPORT_NAME);
+    }
+    return new File(option);
+  }
+
+  boolean isEnabled() {
+    return reportFile != null;
+  }
+
+  /**
+   * Return the timing for the entity (only included in the report when enabled).
+   */
+  EntityTiming entity(String name) {
+    EntityTiming timing = new EntityTiming(name);
+    if (reportFile != null) {
+      entities.add(timing);
+    }
+    return timing;
+  }
+
+  /**
+   * Add the timing of a processing round.
+   */
+  void round(int entityCount, long nanos) {
+    if (reportFile != null) {
+      rounds.add(new long[]{rounds.size() + 1, entityCount, nanos});
+    }
+  }
+
+  /**
+   * Write the JSON report and log the slowest entities.
+   */
+  void report(ProcessingContext processingContext) {
+    if (reportFile == null) {
+      return;
+    }
+    try {
+      File dir = reportFile.getAbsoluteFile().getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("failed to create directories for:" + dir);
+      }
+      Files.write(reportFile.toPath(), json().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      processingContext.logNote("Failed to write timing report " + e.getMessage());
+    }
+
+    List<EntityTiming> slowest = new ArrayList<>(entities);
+    slowest.sort(Comparator.comparingLong(EntityTiming::totalNanos).reversed());
+    StringBuilder msg = new StringBuilder();
+    msg.append("Ebean APT timing report ").append(reportFile.getAbsolutePath()).append(" slowest query beans:");
+    for (EntityTiming timing : slowest.subList(0, Math.min(top, slowest.size()))) {
+      msg.append("\n  ").append(timing.summary());
+    }
+    processingContext.logNote("%s", msg);
+  }
+
+  private String json() {
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (EntityTiming entity : entities) {
+      totalNanos += entity.totalNanos();
+      totalBytes += entity.bytes();
+    }
+    StringBuilder json = new StringBuilder(256 + entities.size() * 200);
+    json.append("{\n  \"entityCount\":").append(entities.size());
+    json.append(",\n  \"totalMicros\":").append(totalNanos / 1000);
+    json.append(",\n  \"bytesWritten\":").append(totalBytes);
+    json.append(",\n  \"rounds\":[");
+    for (int i = 0; i < rounds.size(); i++) {
+      long[] round = rounds.get(i);
+      json.append(i == 0 ? "\n    " : ",\n    ");
+      json.append("{\"round\":").append(round[0]).append(",\"entities\":").append(round[1]).append(",\"micros\":").append(round[2] / 1000).append('}');
+    }
+    json.append("\n  ],\n  \"entities\":[");
+    for (int i = 0; i < entities.size(); i++) {
+      json.append(i == 0 ? "\n    " : ",\n    ");
+      entities.get(i).appendJson(json);
+    }
+    json.append("\n  ]\n}\n");
+    return json.toString();
+  }
+}
@@ -15,6 +15,8 @@ interface Constants {
   String EMBEDDABLE = "javax.persistence.Embeddable";
   String CONVERTER = "javax.persistence.Converter";
   String EBEAN_COMPONENT = "io.ebean.annotation.EbeanComponent";
+  String PROJECTION = "io.ebean.querybean.Projection";
+  String NOT_NULL = "org.jetbrains.annotations.NotNull";
 
   String DBARRAY = "io.ebean.annotation.DbArray";
   String DBJSON = "io.ebean.annotation.DbJson";
@@ -33,5 +35,6 @@ interface Constants {
 
   String MODULEINFO = "io.ebean.config.ModuleInfo";
   String METAINF_MANIFEST = "META-INF/ebean-generated-info.mf";
+  String METAINF_INDEX = "META-INF/ebean-querybean.idx";
   String METAINF_SERVICES_MODULELOADER = "META-INF/services/io.ebean.config.ModuleInfoLoader";
 }
@@ -0,0 +1,117 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.Element;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes generated source files to a base directory.
+ * <p>
+ * Files whose content has not changed are not rewritten such that their timestamps
+ * are preserved and the Kotlin compiler / build tool up-to-date checks are not invalidated.
+ * <p>
+ * The content is rendered in memory and written with a single Files.write call. The existing
+ * file is compared via a single open (its size then content) rather than a stat followed by
+ * a read. The packages
+ * whose directories are known to exist are cached such that the directory is only checked
+ * (and created) once per package rather than once per file.
+ * <p>
+ * Safe for concurrent use by the write pipeline workers.
+ */
+class DirectorySink implements OutputSink {
+
+  private final File baseDir;
+
+  private final AtomicInteger written = new AtomicInteger();
+
+  private final AtomicInteger skipped = new AtomicInteger();
+
+  /**
+   * The packages whose directories are known to exist.
+   */
+  private final Set<String> directories = ConcurrentHashMap.newKeySet();
+
+  DirectorySink(String baseDir) {
+    this.baseDir = new File(baseDir);
+  }
+
+  /**
+   * Write the content to the file unless the existing file has the same content.
+   */
+  @Override
+  public void write(Element origin, String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+
+    long start = System.nanoTime();
+    File file = new File(baseDir, packageName.replace('.', '/') + "/" + fileName);
+    Path path = file.toPath();
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    if (unchanged(path, bytes)) {
+      directories.add(packageName);
+      skipped.incrementAndGet();
+      timing.write(System.nanoTime() - start, 0);
+      return;
+    }
+
+    long dirStart = System.nanoTime();
+    ensureDirectory(packageName, file.getParentFile());
+    long writeStart = System.nanoTime();
+    timing.directory(writeStart - dirStart);
+    Files.write(path, bytes);
+    timing.write(System.nanoTime() - writeStart + (dirStart - start), bytes.length);
+    written.incrementAndGet();
+  }
+
+  /**
+   * Create the directory for the package unless it is already known to exist.
+   */
+  private void ensureDirectory(String packageName, File dir) throws IOException {
+    if (directories.contains(packageName)) {
+      return;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("failed to create directories for:" + dir.getAbsolutePath());
+    }
+    directories.add(packageName);
+  }
+
+  /**
+   * Return true if the file exists with exactly the same content.
+   * <p>
+   * The size of the opened file is the cheap fingerprint checked first, the bytes are only read
+   * and compared when it matches.
+   */
+  private static boolean unchanged(Path path, byte[] bytes) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+      if (channel.size() != bytes.length) {
+        return false;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+      while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+        // read fully
+      }
+      return !buffer.hasRemaining() && Arrays.equals(buffer.array(), bytes);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public int written() {
+    return written.get();
+  }
+
+  @Override
+  public int skipped() {
+    return skipped.get();
+  }
+}
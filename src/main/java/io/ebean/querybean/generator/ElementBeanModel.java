@@ -0,0 +1,72 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bean read from the javax.lang.model elements (annotation processor).
+ */
+class ElementBeanModel implements BeanModel {
+
+  private final TypeElement element;
+
+  private final ProcessingContext processingContext;
+
+  ElementBeanModel(TypeElement element, ProcessingContext processingContext) {
+    this.element = element;
+    this.processingContext = processingContext;
+  }
+
+  @Override
+  public String fullName() {
+    return element.getQualifiedName().toString();
+  }
+
+  @Override
+  public boolean isEntity() {
+    return processingContext.isEntity(element);
+  }
+
+  @Override
+  public boolean isEmbeddable() {
+    return processingContext.isEmbeddable(element);
+  }
+
+  @Override
+  public String dbName() {
+    return processingContext.findDbName(element);
+  }
+
+  /**
+   * Recursively add properties from the inheritance hierarchy.
+   * <p>
+   * Includes properties from mapped super classes and usual inheritance.
+   * </p>
+   */
+  @Override
+  public List<PropertyMeta> properties(EntityTiming timing) {
+
+    long start = System.nanoTime();
+    List<VariableElement> fields = processingContext.allFields(element);
+    long typesStart = System.nanoTime();
+    timing.fields(typesStart - start);
+
+    List<PropertyMeta> properties = new ArrayList<>();
+    for (VariableElement field : fields) {
+      PropertyType type = processingContext.getPropertyType(field);
+      if (type != null) {
+        properties.add(new PropertyMeta(field.getSimpleName().toString(), type, processingContext.assocHeight(type)));
+      }
+    }
+    timing.types(System.nanoTime() - typesStart, properties.size());
+    return properties;
+  }
+
+  @Override
+  public void writeSource(String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+    processingContext.writeSource(element, packageName, fileName, content, timing);
+  }
+}
@@ -0,0 +1,102 @@
+package io.ebean.querybean.generator;
+
+/**
+ * Timings of the generation phases of the query beans for an entity.
+ * <p>
+ * Gathering is timed on the processor thread and rendering / writing possibly on a
+ * write pipeline worker thread (read back after the pipeline has completed).
+ */
+class EntityTiming {
+
+  private final String name;
+
+  private int properties;
+  private long fieldsNanos;
+  private long typesNanos;
+  private long renderNanos;
+  private long directoryNanos;
+  private long writeNanos;
+  private long bytes;
+
+  EntityTiming(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Add the time taken to gather the fields (including mapped superclasses).
+   */
+  void fields(long nanos) {
+    fieldsNanos += nanos;
+  }
+
+  /**
+   * Add the time taken to resolve the property types.
+   */
+  void types(long nanos, int properties) {
+    this.typesNanos += nanos;
+    this.properties = properties;
+  }
+
+  /**
+   * Add the time taken to render a query bean.
+   */
+  void render(long nanos) {
+    renderNanos += nanos;
+  }
+
+  /**
+   * Add the time taken to check / create the output directory.
+   */
+  void directory(long nanos) {
+    directoryNanos += nanos;
+  }
+
+  /**
+   * Add the time taken to write (or compare) a file and the bytes written.
+   */
+  void write(long nanos, long bytes) {
+    this.writeNanos += nanos;
+    this.bytes += bytes;
+  }
+
+  String name() {
+    return name;
+  }
+
+  long totalNanos() {
+    return fieldsNanos + typesNanos + renderNanos + directoryNanos + writeNanos;
+  }
+
+  long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Append as a JSON object.
+   */
+  void appendJson(StringBuilder json) {
+    json.append("{\"name\":\"").append(name).append('"')
+      .append(",\"properties\":").append(properties)
+      .append(",\"fieldsMicros\":").append(fieldsNanos / 1000)
+      .append(",\"typesMicros\":").append(typesNanos / 1000)
+      .append(",\"renderMicros\":").append(renderNanos / 1000)
+      .append(",\"directoryMicros\":").append(directoryNanos / 1000)
+      .append(",\"writeMicros\":").append(writeNanos / 1000)
+      .append(",\"totalMicros\":").append(totalNanos() / 1000)
+      .append(",\"bytesWritten\":").append(bytes)
+      .append('}');
+  }
+
+  /**
+   * Return a one line summary in millis.
+   */
+  String summary() {
+    return String.format("%s %.2fms (fields %.2f, types %.2f, render %.2f, dirs %.2f, write %.2f) %s bytes",
+      name, millis(totalNanos()), millis(fieldsNanos), millis(typesNanos), millis(renderNanos),
+      millis(directoryNanos), millis(writeNanos), bytes);
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+}
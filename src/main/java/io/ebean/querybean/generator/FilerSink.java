@@ -0,0 +1,49 @@
+package io.ebean.querybean.generator;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the generated source files via the Filer with the entity as originating element.
+ * <p>
+ * Used for Gradle incremental annotation processing where the generated files must be created
+ * through the Filer such that Gradle can track (and delete) them per originating element.
+ * <p>
+ * The Filer must only be used on the processor thread so the querybean.parallelism option is
+ * not used with this sink.
+ */
+class FilerSink implements OutputSink {
+
+  private final Filer filer;
+
+  private int written;
+
+  FilerSink(Filer filer) {
+    this.filer = filer;
+  }
+
+  @Override
+  public void write(Element origin, String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+    long start = System.nanoTime();
+    FileObject fileObject = filer.createResource(StandardLocation.SOURCE_OUTPUT, packageName, fileName, origin);
+    try (Writer writer = fileObject.openWriter()) {
+      writer.write(content);
+    }
+    timing.write(System.nanoTime() - start, content.length());
+    written++;
+  }
+
+  @Override
+  public int written() {
+    return written;
+  }
+
+  @Override
+  public int skipped() {
+    return 0;
+  }
+}
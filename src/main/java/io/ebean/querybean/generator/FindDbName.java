@@ -7,16 +7,44 @@ import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Types;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Finds the DbName of entities caching the result for each class in the hierarchy.
+ * <p>
+ * Entities typically share a few base classes so each superclass is only checked once.
+ */
 class FindDbName {
 
+  private final Types typeUtils;
+
+  /**
+   * The DbName (or null) keyed by class name.
+   */
+  private final Map<String, String> dbNames = new HashMap<>();
+
+  FindDbName(Types typeUtils) {
+    this.typeUtils = typeUtils;
+  }
+
   /**
-   * Return the value of the DbName annotation or null if it isn't found on the element.
+   * Return the value of the DbName annotation or null if it isn't found on the element or its superclasses.
    */
-  static String value(TypeElement element, Types typeUtils) {
+  String value(TypeElement element) {
+
+    String key = element.getQualifiedName().toString();
+    if (dbNames.containsKey(key)) {
+      return dbNames.get(key);
+    }
+    String dbName = find(element);
+    dbNames.put(key, dbName);
+    return dbName;
+  }
+
+  private String find(TypeElement element) {
 
     AnnotationMirror mirror = findDbNameMirror(element);
     if (mirror != null) {
@@ -27,7 +55,7 @@ class FindDbName {
       return null;
     }
     final TypeElement element1 = (TypeElement)typeUtils.asElement(typeMirror);
-    return value(element1, typeUtils);
+    return value(element1);
   }
 
   private static String readDbNameValue(AnnotationMirror mirror) {
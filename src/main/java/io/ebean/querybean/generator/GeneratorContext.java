@@ -0,0 +1,84 @@
+package io.ebean.querybean.generator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * The options and output used to render the query beans and the ModuleInfoLoader.
+ * <p>
+ * Implemented by the annotation processor (kapt) and the KSP frontend such that both
+ * share the same rendering.
+ */
+interface GeneratorContext {
+
+  /**
+   * Return true when the companion _alias of the root query beans is lazily initialised.
+   */
+  boolean isLazyAlias();
+
+  /**
+   * Return true when root query beans set a default label and notify a listener of executed queries.
+   */
+  boolean isQueryMetrics();
+
+  /**
+   * Return how the query bean property fields are declared and initialised.
+   */
+  PropertyMode propertyMode();
+
+  /**
+   * Return the maximum depth of the eagerly initialised association graph (0 when not bounded by the association graph).
+   */
+  int maxDepth();
+
+  /**
+   * Return true when the generated ModuleInfoLoader loads the entity classes by name.
+   */
+  boolean isEntityNames();
+
+  /**
+   * Return true when the generated ModuleInfoLoader includes the parallel preload entry point.
+   */
+  boolean isPreload();
+
+  /**
+   * Return true when a Generated annotation is available.
+   */
+  boolean isGeneratedAvailable();
+
+  /**
+   * Return the Generated annotation to import (null when not available).
+   */
+  String getGeneratedAnnotation();
+
+  /**
+   * Return the timing for the entity.
+   */
+  EntityTiming entityTiming(String name);
+
+  /**
+   * Return the (JFR) events of the processing phases.
+   */
+  ProcessingEvents events();
+
+  /**
+   * Return the registered entity and other classes.
+   */
+  ModuleRegistry module();
+
+  /**
+   * Create a writer for the (java) source of the given class.
+   */
+  Writer createSourceWriter(String className) throws IOException;
+
+  /**
+   * Create the resource with the given path (for example META-INF/ebean-generated-info.mf).
+   */
+  OutputStream createResource(String path) throws IOException;
+
+  /**
+   * Log an error.
+   */
+  void logError(String msg);
+}
@@ -2,14 +2,62 @@ package io.ebean.querybean.generator;
 
 class KotlinLangAdapter implements LangAdapter {
 
+  private static final Template BEGIN_CLASS = Template.of("class Q%s : TQRootBean<%1$s, Q%1$s> {");
+  private static final Template BEGIN_ASSOC_CLASS = Template.of("class Q%s<R> : TQAssocBean<%s,R> {");
+  private static final Template FOR_FETCH_GROUP = Template.of("    fun forFetchGroup(): Q%s {");
+  private static final Template FOR_FETCH_GROUP_RETURN = Template.of("      return Q%s(FetchGroup.queryFor(%s::class.java));");
+  private static final Template FETCH = Template.of("  fun fetch%s(vararg properties: TQProperty<Q%s>) : R {");
+  private static final Template FETCH_RETURN = Template.of("    return fetch%sProperties(*properties)");
+  private static final Template CONSTRUCT_DATABASE_COMMENT = Template.of("   * Construct using the %s Database.");
+  private static final Template CONSTRUCT_DEFAULT = Template.of("  constructor() : super(%s::class.java)");
+  private static final Template CONSTRUCT_DB_NAME = Template.of("  constructor() : super(%s::class.java, DB.byName(\"%s\"))");
+  private static final Template CONSTRUCT_TRANSACTION = Template.of("  constructor(transaction: Transaction) : super(%s::class.java, transaction)");
+  private static final Template CONSTRUCT_DB_NAME_TRANSACTION = Template.of("  constructor(transaction: Transaction) : super(%s::class.java, DB.byName(\"%s\"), transaction)");
+  private static final Template CONSTRUCT_DATABASE = Template.of("  constructor(database: Database) : super(%s::class.java, database)");
+  private static final Template CONSTRUCT_FETCH_GROUP = Template.of("  private constructor(fetchGroupQuery: Query<%s>) : super(fetchGroupQuery)");
+  private static final Template FIELD = Template.of("  lateinit var %s: ");
+  private static final Template INIT_FIELD = Template.of("  @JvmField val %s: ");
+  private static final Template LAZY_FIELD = Template.of("  val %s: ");
+  private static final Template INIT_ROOT = Template.of(" = %s(\"%s\", this)");
+  private static final Template INIT_ASSOC = Template.of(" = %s(\"%s\", _root, _name)");
+  private static final Template LAZY_ROOT = Template.of(" by lazy(LazyThreadSafetyMode.PUBLICATION) { %s(\"%s\", this) }");
+  private static final Template LAZY_ASSOC = Template.of(" by lazy(LazyThreadSafetyMode.PUBLICATION) { %s(\"%s\", _root, _name) }");
+  private static final Template BACKING_FIELD = Template.of("  private var __%s: %s? = null");
+  private static final Template LAZY_GETTER = Template.of("    get() = __%s ?: ");
+  private static final Template CREATE_ROOT = Template.of("%s(\"%s\", this)");
+  private static final Template CREATE_ASSOC = Template.of("%s(\"%s\", _root, _name)");
+  private static final Template ALSO_SET = Template.of(".also { __%s = it }");
+  private static final Template LAZY_ALIAS = Template.of("    val _alias: Q%s");
+  private static final Template ALIAS_INSTANCE = Template.of("      val instance = Q%s(true)");
+  private static final Template SET_LABEL = Template.of("    setLabel(\"%s\")");
+  private static final Template LISTENER = Template.of("    var listener: ExecutionListener? = null");
+  private static final Template FIND_LIST = Template.of("  override fun findList(): kotlin.collections.List<%s> {");
+  private static final Template FIND_ONE = Template.of("  override fun findOne(): %s? {");
+  private static final Template LISTENER_OR_SUPER = Template.of("    val listener = Q%s.listener ?: return super.%s()");
+
+  /**
+   * When true the companion _alias is initialised on first use via a holder object.
+   */
+  private final boolean lazyAlias;
+
+  /**
+   * When true the root query beans set a default label and notify a listener of executed queries.
+   */
+  private final boolean queryMetrics;
+
+  KotlinLangAdapter(boolean lazyAlias, boolean queryMetrics) {
+    this.lazyAlias = lazyAlias;
+    this.queryMetrics = queryMetrics;
+  }
+
   @Override
   public void beginClass(Append writer, String shortName) {
-    writer.append("class Q%s : TQRootBean<%1$s, Q%1$s> {", shortName).eol();
+    writer.append(BEGIN_CLASS, shortName).eol();
   }
 
   @Override
   public void beginAssocClass(Append writer, String shortName, String origShortName) {
-    writer.append("class Q%s<R> : TQAssocBean<%s,R> {", shortName, origShortName).eol();
+    writer.append(BEGIN_ASSOC_CLASS, shortName, origShortName).eol();
   }
 
   @Override
@@ -20,14 +68,35 @@ class KotlinLangAdapter implements LangAdapter {
     writer.append("     * shared 'Alias' instance used to provide").eol();
     writer.append("     * properties to select and fetch clauses").eol();
     writer.append("     */").eol();
-    writer.append("    val _alias = Q").append(shortName).append("(true)").eol();
+    if (lazyAlias) {
+      writer.append(LAZY_ALIAS, shortName).eol();
+      writer.append("      get() = Alias.instance").eol();
+      writer.eol();
+      writer.append("    /**").eol();
+      writer.append("     * Holder initialising the alias on first use (rather than when the class is loaded).").eol();
+      writer.append("     */").eol();
+      writer.append("    private object Alias {").eol();
+      writer.append(ALIAS_INSTANCE, shortName).eol();
+      writer.append("    }").eol();
+    } else {
+      writer.append("    val _alias = Q").append(shortName).append("(true)").eol();
+    }
     writer.eol();
     writer.append("    /**").eol();
     writer.append("     * Return a query bean used to build a FetchGroup.").eol();
     writer.append("     */").eol();
-    writer.append("    fun forFetchGroup(): Q%s {", shortName).eol();
-    writer.append("      return Q%s(FetchGroup.queryFor(%s::class.java));", shortName, shortName).eol();
+    writer.append(FOR_FETCH_GROUP, shortName).eol();
+    writer.append(FOR_FETCH_GROUP_RETURN, shortName, shortName).eol();
     writer.append("    }").eol();
+    if (queryMetrics) {
+      writer.eol();
+      writer.append("    /**").eol();
+      writer.append("     * Listener notified of the findList, findOne and findCount queries executed by this query bean type.").eol();
+      writer.append("     */").eol();
+      writer.append("    @JvmStatic").eol();
+      writer.append("    @Volatile").eol();
+      writer.append(LISTENER, shortName).eol();
+    }
     writer.append("  }").eol().eol();
   }
 
@@ -57,8 +126,8 @@ class KotlinLangAdapter implements LangAdapter {
     writer.append("  /**").eol();
     writer.append("   * ").append(comment).eol();
     writer.append("   */").eol();
-    writer.append("  fun fetch%s(vararg properties: TQProperty<Q%s>) : R {", fetchType, origShortName).eol();
-    writer.append("    return fetch%sProperties(*properties)", fetchType).eol();
+    writer.append(FETCH, fetchType, origShortName).eol();
+    writer.append(FETCH_RETURN, fetchType).eol();
     writer.append("  }").eol();
     writer.eol();
   }
@@ -70,28 +139,34 @@ class KotlinLangAdapter implements LangAdapter {
     String name = (dbName == null) ? "default" : dbName;
 
     writer.append("  /**").eol();
-    writer.append("   * Construct using the %s Database.", name).eol();
+    writer.append(CONSTRUCT_DATABASE_COMMENT, name).eol();
     writer.append("   */").eol();
     if (dbName == null) {
-      writer.append("  constructor() : super(%s::class.java)", shortName).eol().eol();
+      writer.append(CONSTRUCT_DEFAULT, shortName);
     } else {
-      writer.append("  constructor() : super(%s::class.java, DB.byName(\"%s\"))", shortName, dbName).eol().eol();
+      writer.append(CONSTRUCT_DB_NAME, shortName, dbName);
     }
+    label(writer, shortName);
+    writer.eol().eol();
 
     writer.append("  /**").eol();
-    writer.append("   * Construct with a given Transaction.", name).eol();
+    writer.append("   * Construct with a given Transaction.").eol();
     writer.append("   */").eol();
     if (dbName == null) {
-      writer.append("  constructor(transaction: Transaction) : super(%s::class.java, transaction)", shortName).eol().eol();
+      writer.append(CONSTRUCT_TRANSACTION, shortName);
     } else {
-      writer.append("  constructor(transaction: Transaction) : super(%s::class.java, DB.byName(\"%s\"), transaction)", shortName, dbName).eol().eol();
+      writer.append(CONSTRUCT_DB_NAME_TRANSACTION, shortName, dbName);
     }
+    label(writer, shortName);
+    writer.eol().eol();
 
     writer.eol();
     writer.append("  /**").eol();
     writer.append("   * Construct with a given Database.").eol();
     writer.append("   */").eol();
-    writer.append("  constructor(database: Database) : super(%s::class.java, database)", shortName).eol().eol();
+    writer.append(CONSTRUCT_DATABASE, shortName);
+    label(writer, shortName);
+    writer.eol().eol();
 
     writer.append("  /**").eol();
     writer.append("   * Construct for Alias.").eol();
@@ -101,17 +176,119 @@ class KotlinLangAdapter implements LangAdapter {
     writer.append("  /**").eol();
     writer.append("   * Private constructor for FetchGroup building.").eol();
     writer.append("   */").eol();
-    writer.append("  private constructor(fetchGroupQuery: Query<%s>) : super(fetchGroupQuery)", shortName).eol();
+    writer.append(CONSTRUCT_FETCH_GROUP, shortName).eol();
+  }
+
+  /**
+   * With query metrics the constructor body sets the default label (the bean type).
+   */
+  private void label(Append writer, String shortName) {
+    if (queryMetrics) {
+      writer.append(" {").eol();
+      writer.append(SET_LABEL, shortName).eol();
+      writer.append("  }");
+    }
+  }
+
+  @Override
+  public void rootBeanFind(Append writer, String shortName) {
+    if (!queryMetrics) {
+      return;
+    }
+    writer.eol();
+    writer.append("  /**").eol();
+    writer.append("   * Listener for the metrics of the queries executed by this query bean type.").eol();
+    writer.append("   *").eol();
+    writer.append("   * Only findList, findOne and findCount are observed. The lazily executed findIterate, findEach,").eol();
+    writer.append("   * findEachWhile, findStream and findPagedList along with findIds, findSet, findMap,").eol();
+    writer.append("   * findSingleAttributeList, exists, delete and update are not.").eol();
+    writer.append("   */").eol();
+    writer.append("  interface ExecutionListener {").eol().eol();
+    writer.append("    /**").eol();
+    writer.append("     * Query executed with its label, execution time, row count and hash of the generated sql (query plan).").eol();
+    writer.append("     */").eol();
+    writer.append("    fun executed(label: String?, nanos: Long, rowCount: Int, planHash: Int)").eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * Execute the query returning the list of beans (notifying the listener when set).").eol();
+    writer.append("   */").eol();
+    writer.append(FIND_LIST, shortName).eol();
+    writer.append(LISTENER_OR_SUPER, shortName, "findList").eol();
+    writer.append("    val start = System.nanoTime()").eol();
+    writer.append("    val list = super.findList()").eol();
+    writer.append("    listener.executed(query().label, System.nanoTime() - start, list.size, planHash())").eol();
+    writer.append("    return list").eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * Execute the query returning zero or one bean (notifying the listener when set).").eol();
+    writer.append("   */").eol();
+    writer.append(FIND_ONE, shortName).eol();
+    writer.append(LISTENER_OR_SUPER, shortName, "findOne").eol();
+    writer.append("    val start = System.nanoTime()").eol();
+    writer.append("    val bean = super.findOne()").eol();
+    writer.append("    listener.executed(query().label, System.nanoTime() - start, if (bean == null) 0 else 1, planHash())").eol();
+    writer.append("    return bean").eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * Execute the query returning the row count (notifying the listener when set).").eol();
+    writer.append("   */").eol();
+    writer.append("  override fun findCount(): Int {").eol();
+    writer.append(LISTENER_OR_SUPER, shortName, "findCount").eol();
+    writer.append("    val start = System.nanoTime()").eol();
+    writer.append("    val count = super.findCount()").eol();
+    writer.append("    listener.executed(query().label, System.nanoTime() - start, count, planHash())").eol();
+    writer.append("    return count").eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  private fun planHash(): Int = query().generatedSql?.hashCode() ?: 0").eol();
   }
 
   @Override
   public void fieldDefn(Append writer, String propertyName, String typeDefn)  {
 
-    writer.append("  lateinit var %s: ", propertyName);
+    writer.append(FIELD, propertyName);
+    writer.append(kotlinType(typeDefn));
+  }
+
+  @Override
+  public void initFieldDefn(Append writer, String propertyName, String typeDefn, boolean lazy, boolean assocBean) {
+
+    //  @JvmField val name: PString<QCustomer> = PString("name", this)
+    //  val customer: QAssocCustomer<R> by lazy(LazyThreadSafetyMode.PUBLICATION) { QAssocCustomer<R>("customer", _root, _name) }
+    typeDefn = kotlinType(typeDefn);
+    writer.append(lazy ? LAZY_FIELD : INIT_FIELD, propertyName);
+    writer.append(typeDefn);
+    if (lazy) {
+      writer.append(assocBean ? LAZY_ASSOC : LAZY_ROOT, typeDefn, propertyName);
+    } else {
+      String type = typeDefn.substring(0, typeDefn.indexOf('<'));
+      writer.append(assocBean ? INIT_ASSOC : INIT_ROOT, type, propertyName);
+    }
+  }
+
+  @Override
+  public void lazyFieldDefn(Append writer, String propertyName, String typeDefn, boolean assocBean) {
+
+    //  private var __name: PString<QCustomer>? = null
+    //  val name: PString<QCustomer>
+    //    get() = __name ?: PString<QCustomer>("name", this).also { __name = it }
+    // (double underscore as TQAssocBean has _root and _name fields)
+    typeDefn = kotlinType(typeDefn);
+    writer.append(BACKING_FIELD, propertyName, typeDefn).eol();
+    writer.append(LAZY_FIELD, propertyName).append(typeDefn).eol();
+    writer.append(LAZY_GETTER, propertyName);
+    writer.append(assocBean ? CREATE_ASSOC : CREATE_ROOT, typeDefn, propertyName);
+    writer.append(ALSO_SET, propertyName);
+  }
+
+  private static String kotlinType(String typeDefn) {
     if (typeDefn.endsWith(",Integer>")) {
-      typeDefn = typeDefn.replace(",Integer>", ",Int>");
+      return typeDefn.replace(",Integer>", ",Int>");
     }
-    writer.append(typeDefn);
+    return typeDefn;
   }
 
 }
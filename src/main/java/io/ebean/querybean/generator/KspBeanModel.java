@@ -0,0 +1,67 @@
+package io.ebean.querybean.generator;
+
+import com.google.devtools.ksp.symbol.KSClassDeclaration;
+import com.google.devtools.ksp.symbol.KSPropertyDeclaration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bean read from the KSP symbols.
+ */
+class KspBeanModel implements BeanModel {
+
+  private final KSClassDeclaration declaration;
+
+  private final KspContext context;
+
+  KspBeanModel(KSClassDeclaration declaration, KspContext context) {
+    this.declaration = declaration;
+    this.context = context;
+  }
+
+  @Override
+  public String fullName() {
+    return KspContext.qualifiedName(declaration);
+  }
+
+  @Override
+  public boolean isEntity() {
+    return context.isEntity(declaration);
+  }
+
+  @Override
+  public boolean isEmbeddable() {
+    return context.isEmbeddable(declaration);
+  }
+
+  @Override
+  public String dbName() {
+    return context.dbName(declaration);
+  }
+
+  @Override
+  public List<PropertyMeta> properties(EntityTiming timing) {
+
+    long start = System.nanoTime();
+    List<KSPropertyDeclaration> fields = context.allProperties(declaration);
+    long typesStart = System.nanoTime();
+    timing.fields(typesStart - start);
+
+    List<PropertyMeta> properties = new ArrayList<>();
+    for (KSPropertyDeclaration field : fields) {
+      PropertyType type = context.getPropertyType(field);
+      if (type != null) {
+        properties.add(new PropertyMeta(field.getSimpleName().asString(), type, 0));
+      }
+    }
+    timing.types(System.nanoTime() - typesStart, properties.size());
+    return properties;
+  }
+
+  @Override
+  public void writeSource(String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+    context.writeSource(declaration.getContainingFile(), packageName, fileName, content, timing);
+  }
+}
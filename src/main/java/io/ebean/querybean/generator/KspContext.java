@@ -0,0 +1,615 @@
+package io.ebean.querybean.generator;
+
+import com.google.devtools.ksp.processing.CodeGenerator;
+import com.google.devtools.ksp.processing.Dependencies;
+import com.google.devtools.ksp.processing.KSPLogger;
+import com.google.devtools.ksp.processing.Resolver;
+import com.google.devtools.ksp.processing.SymbolProcessorEnvironment;
+import com.google.devtools.ksp.symbol.ClassKind;
+import com.google.devtools.ksp.symbol.KSAnnotated;
+import com.google.devtools.ksp.symbol.KSAnnotation;
+import com.google.devtools.ksp.symbol.KSClassDeclaration;
+import com.google.devtools.ksp.symbol.KSDeclaration;
+import com.google.devtools.ksp.symbol.KSFile;
+import com.google.devtools.ksp.symbol.KSName;
+import com.google.devtools.ksp.symbol.KSNode;
+import com.google.devtools.ksp.symbol.KSPropertyDeclaration;
+import com.google.devtools.ksp.symbol.KSType;
+import com.google.devtools.ksp.symbol.KSTypeAlias;
+import com.google.devtools.ksp.symbol.KSTypeArgument;
+import com.google.devtools.ksp.symbol.KSTypeReference;
+import com.google.devtools.ksp.symbol.KSValueArgument;
+import com.google.devtools.ksp.symbol.Modifier;
+import kotlin.sequences.Sequence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Context for the KSP frontend building the property model from the KSP symbols.
+ * <p>
+ * The property types are resolved as for the Java stubs generated by kapt (Kotlin types
+ * mapped to their Java types) such that the generated query beans are the same.
+ */
+class KspContext implements Constants, GeneratorContext {
+
+  /**
+   * Kotlin types mapped to the Java types (as seen in the kapt Java stubs).
+   */
+  private static final Map<String, String> JAVA_TYPES = new HashMap<>();
+
+  /**
+   * Kotlin types that map to a primitive when not nullable.
+   */
+  private static final Map<String, String> PRIMITIVE_TYPES = new HashMap<>();
+
+  static {
+    primitive("kotlin.Boolean", "boolean", "java.lang.Boolean");
+    primitive("kotlin.Byte", "byte", "java.lang.Byte");
+    primitive("kotlin.Short", "short", "java.lang.Short");
+    primitive("kotlin.Int", "int", "java.lang.Integer");
+    primitive("kotlin.Long", "long", "java.lang.Long");
+    primitive("kotlin.Float", "float", "java.lang.Float");
+    primitive("kotlin.Double", "double", "java.lang.Double");
+    primitive("kotlin.Char", "char", "java.lang.Character");
+    JAVA_TYPES.put("kotlin.String", "java.lang.String");
+    JAVA_TYPES.put("kotlin.Any", "java.lang.Object");
+    JAVA_TYPES.put("kotlin.CharSequence", "java.lang.CharSequence");
+    JAVA_TYPES.put("kotlin.Number", "java.lang.Number");
+    JAVA_TYPES.put("kotlin.Comparable", "java.lang.Comparable");
+    JAVA_TYPES.put("kotlin.Enum", "java.lang.Enum");
+    JAVA_TYPES.put("kotlin.Throwable", "java.lang.Throwable");
+    JAVA_TYPES.put("kotlin.collections.Iterable", "java.lang.Iterable");
+    JAVA_TYPES.put("kotlin.collections.MutableIterable", "java.lang.Iterable");
+    JAVA_TYPES.put("kotlin.collections.Collection", "java.util.Collection");
+    JAVA_TYPES.put("kotlin.collections.MutableCollection", "java.util.Collection");
+    JAVA_TYPES.put("kotlin.collections.List", "java.util.List");
+    JAVA_TYPES.put("kotlin.collections.MutableList", "java.util.List");
+    JAVA_TYPES.put("kotlin.collections.Set", "java.util.Set");
+    JAVA_TYPES.put("kotlin.collections.MutableSet", "java.util.Set");
+    JAVA_TYPES.put("kotlin.collections.Map", "java.util.Map");
+    JAVA_TYPES.put("kotlin.collections.MutableMap", "java.util.Map");
+  }
+
+  private static void primitive(String kotlinType, String primitive, String boxed) {
+    PRIMITIVE_TYPES.put(kotlinType, primitive);
+    JAVA_TYPES.put(kotlinType, boxed);
+  }
+
+  /**
+   * Marker for a type that resolves to no property type (negative cache entry).
+   */
+  private static final PropertyType UNRESOLVED = new PropertyType("");
+
+  private final CodeGenerator codeGenerator;
+
+  private final KSPLogger logger;
+
+  private final PropertyTypeMap propertyTypeMap = new PropertyTypeMap();
+
+  /**
+   * Property types resolved keyed by the Java type (for types without type arguments).
+   */
+  private final Map<String, PropertyType> resolvedTypes = new HashMap<>();
+
+  /**
+   * The DbName (or null) keyed by class name.
+   */
+  private final Map<String, String> dbNames = new HashMap<>();
+
+  private final boolean lazyAlias;
+
+  private final boolean queryMetrics;
+
+  private final PropertyMode propertyMode;
+
+  private final boolean entityNames;
+
+  private final boolean preload;
+
+  private final ProcessingEvents events = ProcessingEvents.create();
+
+  private final ModuleRegistry module = new ModuleRegistry();
+
+  /**
+   * The source files of the registered classes (the ModuleInfoLoader is aggregated from these).
+   */
+  private final Set<KSFile> moduleFiles = new LinkedHashSet<>();
+
+  private Resolver resolver;
+
+  private String generatedAnnotation;
+
+  KspContext(SymbolProcessorEnvironment environment) {
+    this.codeGenerator = environment.getCodeGenerator();
+    this.logger = environment.getLogger();
+    Map<String, String> options = environment.getOptions();
+    this.lazyAlias = Boolean.parseBoolean(options.get(Processor.LAZY_ALIAS_OPTION));
+    this.queryMetrics = Boolean.parseBoolean(options.get(Processor.QUERY_METRICS_OPTION));
+    this.propertyMode = initPropertyMode(options);
+    this.entityNames = Boolean.parseBoolean(options.get(ModuleInfoProcessor.ENTITY_NAMES_OPTION));
+    this.preload = Boolean.parseBoolean(options.get(ModuleInfoProcessor.PRELOAD_OPTION));
+    if (options.containsKey(Processor.MAX_DEPTH_OPTION)) {
+      logNote("Ignoring " + Processor.MAX_DEPTH_OPTION + " option, not supported with KSP");
+    }
+  }
+
+  private PropertyMode initPropertyMode(Map<String, String> options) {
+    String option = options.get(Processor.PROPERTIES_OPTION);
+    PropertyMode mode = PropertyMode.of(option);
+    if (mode == null) {
+      logNote("Ignoring invalid " + Processor.PROPERTIES_OPTION + " option value " + option);
+      return PropertyMode.LATEINIT;
+    }
+    return mode;
+  }
+
+  /**
+   * Start a processing round with the resolver of the round.
+   */
+  void startRound(Resolver resolver) {
+    this.resolver = resolver;
+    if (generatedAnnotation == null) {
+      generatedAnnotation = isTypeAvailable(GENERATED_9) ? GENERATED_9 : isTypeAvailable(GENERATED_8) ? GENERATED_8 : null;
+    }
+  }
+
+  private boolean isTypeAvailable(String canonicalName) {
+    return resolver.getClassDeclarationByName(resolver.getKSNameFromString(canonicalName)) != null;
+  }
+
+  /**
+   * Return the classes annotated with the given annotation (in this round).
+   */
+  List<KSClassDeclaration> annotatedClasses(String annotation) {
+    List<KSClassDeclaration> classes = new ArrayList<>();
+    for (KSAnnotated annotated : iterable(resolver.getSymbolsWithAnnotation(annotation, false))) {
+      if (annotated instanceof KSClassDeclaration) {
+        classes.add((KSClassDeclaration) annotated);
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * Return the sequence as an iterable (for the enhanced for loop).
+   */
+  static <T> Iterable<T> iterable(Sequence<T> sequence) {
+    return sequence::iterator;
+  }
+
+  /**
+   * Register the entity (or embeddable) for the generated ModuleInfoLoader.
+   */
+  void addEntity(KSClassDeclaration declaration) {
+    addBinaryName(declaration);
+    if (isEmbeddable(declaration)) {
+      module.addEmbeddable(qualifiedName(declaration));
+    }
+    module.addEntity(qualifiedName(declaration), dbName(declaration));
+    addModuleFile(declaration);
+  }
+
+  /**
+   * Register the other class (converter or component) for the generated ModuleInfoLoader.
+   */
+  void addOther(KSClassDeclaration declaration) {
+    addBinaryName(declaration);
+    module.addOther(qualifiedName(declaration));
+    addModuleFile(declaration);
+  }
+
+  /**
+   * Register the binary name, the package followed by the (nested) class names joined by '$'.
+   */
+  private void addBinaryName(KSClassDeclaration declaration) {
+    String qualifiedName = qualifiedName(declaration);
+    String pkg = declaration.getPackageName().asString();
+    String nestedName = pkg.isEmpty() ? qualifiedName : qualifiedName.substring(pkg.length() + 1);
+    module.addBinaryName(qualifiedName, pkg.isEmpty() ? nestedName.replace('.', '$') : pkg + "." + nestedName.replace('.', '$'));
+  }
+
+  private void addModuleFile(KSClassDeclaration declaration) {
+    KSFile file = declaration.getContainingFile();
+    if (file != null) {
+      moduleFiles.add(file);
+    }
+  }
+
+  /**
+   * Return true when entities or other classes have been registered.
+   */
+  boolean hasModuleClasses() {
+    return !module.getPrefixEntities().isEmpty() || module.hasOtherClasses();
+  }
+
+  static String qualifiedName(KSDeclaration declaration) {
+    KSName name = declaration.getQualifiedName();
+    return name == null ? declaration.getSimpleName().asString() : name.asString();
+  }
+
+  boolean isEntity(KSClassDeclaration declaration) {
+    return hasAnnotation(declaration, ENTITY);
+  }
+
+  boolean isEmbeddable(KSClassDeclaration declaration) {
+    return hasAnnotation(declaration, EMBEDDABLE);
+  }
+
+  private boolean isEntityOrEmbedded(KSClassDeclaration declaration) {
+    return isEntity(declaration) || isEmbeddable(declaration);
+  }
+
+  /**
+   * Return the value of the DbName annotation or null if it isn't found on the class or its superclasses.
+   */
+  String dbName(KSClassDeclaration declaration) {
+    String key = qualifiedName(declaration);
+    if (dbNames.containsKey(key)) {
+      return dbNames.get(key);
+    }
+    Object value = annotationValue(declaration, DBNAME, "value");
+    String dbName;
+    if (value != null) {
+      dbName = value.toString();
+    } else {
+      KSClassDeclaration superclass = superclass(declaration);
+      dbName = (superclass == null) ? null : dbName(superclass);
+    }
+    dbNames.put(key, dbName);
+    return dbName;
+  }
+
+  /**
+   * Return the superclass (null for kotlin.Any or when it does not resolve).
+   */
+  private static KSClassDeclaration superclass(KSClassDeclaration declaration) {
+    for (KSTypeReference superType : iterable(declaration.getSuperTypes())) {
+      KSClassDeclaration superDeclaration = classDeclaration(superType.resolve());
+      if (superDeclaration != null && superDeclaration.getClassKind() == ClassKind.CLASS) {
+        return superDeclaration;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the class declaration of the type expanding type aliases (null for a type parameter).
+   */
+  private static KSClassDeclaration classDeclaration(KSType type) {
+    KSDeclaration declaration = type.getDeclaration();
+    while (declaration instanceof KSTypeAlias) {
+      declaration = ((KSTypeAlias) declaration).getType().resolve().getDeclaration();
+    }
+    return (declaration instanceof KSClassDeclaration) ? (KSClassDeclaration) declaration : null;
+  }
+
+  /**
+   * Gather all the properties for the given bean declaration (including mapped superclasses).
+   */
+  List<KSPropertyDeclaration> allProperties(KSClassDeclaration declaration) {
+    List<KSPropertyDeclaration> list = new ArrayList<>();
+    gatherProperties(list, declaration);
+    return list;
+  }
+
+  private void gatherProperties(List<KSPropertyDeclaration> properties, KSClassDeclaration declaration) {
+    KSClassDeclaration mappedSuper = superclass(declaration);
+    if (mappedSuper != null && hasAnnotation(mappedSuper, MAPPED_SUPERCLASS, INHERITANCE)) {
+      gatherProperties(properties, mappedSuper);
+    }
+    for (KSDeclaration member : iterable(declaration.getDeclarations())) {
+      if (member instanceof KSPropertyDeclaration && !ignoreProperty((KSPropertyDeclaration) member)) {
+        properties.add((KSPropertyDeclaration) member);
+      }
+    }
+  }
+
+  /**
+   * Not interested in properties without a field, static, transient or Ebean internal fields.
+   */
+  private boolean ignoreProperty(KSPropertyDeclaration property) {
+    if (!property.getHasBackingField() || property.getExtensionReceiver() != null) {
+      return true;
+    }
+    Set<Modifier> modifiers = property.getModifiers();
+    if (modifiers.contains(Modifier.JAVA_STATIC) || modifiers.contains(Modifier.JAVA_TRANSIENT) || hasAnnotation(property, "kotlin.jvm.Transient")) {
+      return true;
+    }
+    String name = property.getSimpleName().asString();
+    return name.startsWith("_ebean") || name.startsWith("_EBEAN");
+  }
+
+  /**
+   * Return the property type for the property.
+   * <p>
+   * Unless the property has annotations that change the resolution (DbJson, DbArray, targetEntity) or the
+   * type has type arguments the result only depends on the type and is cached keyed by the Java type.
+   * </p>
+   */
+  PropertyType getPropertyType(KSPropertyDeclaration property) {
+    KSType type = property.getType().resolve();
+    KSClassDeclaration declaration = classDeclaration(type);
+    if (declaration == null) {
+      return null;
+    }
+    String javaType = javaType(declaration, type.isMarkedNullable());
+    if (javaType == null || !type.getArguments().isEmpty() || hasAnnotation(property, DBJSON, DBJSONB, DBARRAY)) {
+      return resolvePropertyType(property, type, declaration, javaType);
+    }
+    PropertyType propertyType = resolvedTypes.get(javaType);
+    if (propertyType == null) {
+      propertyType = resolvePropertyType(property, type, declaration, javaType);
+      resolvedTypes.put(javaType, (propertyType == null) ? UNRESOLVED : propertyType);
+    }
+    return (propertyType == UNRESOLVED) ? null : propertyType;
+  }
+
+  private PropertyType resolvePropertyType(KSPropertyDeclaration property, KSType type, KSClassDeclaration declaration, String javaType) {
+
+    boolean primitive = javaType != null && javaType.indexOf('.') == -1;
+    KSClassDeclaration current = declaration;
+    String currentType = javaType;
+    while (currentType != null) {
+      PropertyType propertyType = propertyTypeMap.getType(currentType);
+      if (propertyType != null) {
+        // simple scalar type
+        return propertyType;
+      }
+      // go up in class hierarchy (not for primitives)
+      current = primitive ? null : superclass(current);
+      currentType = (current == null) ? null : javaType(current, true);
+    }
+
+    if (hasAnnotation(property, DBJSON, DBJSONB)) {
+      return propertyTypeMap.getDbJsonType();
+    }
+    if (javaType == null || primitive) {
+      // kotlin array or primitive type
+      return null;
+    }
+
+    if (hasAnnotation(property, DBARRAY) && type.getArguments().size() == 1) {
+      KSClassDeclaration element = argumentDeclaration(type.getArguments().get(0));
+      return (element == null) ? null : propertyTypeMap.arrayType(javaType(element, true));
+    }
+
+    if (declaration.getClassKind() == ClassKind.ENUM_CLASS) {
+      return propertyTypeMap.enumType(javaType, Split.shortName(javaType));
+    }
+
+    if (isEntityOrEmbedded(declaration)) {
+      return propertyTypeMap.assocType(javaType);
+    }
+
+    if (type.getArguments().size() == 1) {
+      KSClassDeclaration argument = argumentDeclaration(type.getArguments().get(0));
+      if (argument != null && isEntityOrEmbedded(argument)) {
+        return propertyTypeMap.assocType(qualifiedName(argument));
+      }
+      // look for targetEntity annotation attribute
+      KSClassDeclaration targetEntity = targetEntity(property);
+      if (targetEntity != null && isEntityOrEmbedded(targetEntity)) {
+        return propertyTypeMap.assocType(qualifiedName(targetEntity));
+      }
+    }
+    return propertyTypeMap.scalarType(javaType, isComparable(declaration));
+  }
+
+  private static KSClassDeclaration argumentDeclaration(KSTypeArgument argument) {
+    KSTypeReference reference = argument.getType();
+    return (reference == null) ? null : classDeclaration(reference.resolve());
+  }
+
+  private KSClassDeclaration targetEntity(KSPropertyDeclaration property) {
+    for (KSAnnotation annotation : iterable(property.getAnnotations())) {
+      for (KSValueArgument argument : annotation.getArguments()) {
+        if (argument.getName() != null && "targetEntity".equals(argument.getName().asString()) && argument.getValue() instanceof KSType) {
+          return classDeclaration((KSType) argument.getValue());
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the Java type of the class (the primitive when not nullable, null for Kotlin arrays).
+   */
+  private static String javaType(KSClassDeclaration declaration, boolean nullable) {
+    String name = qualifiedName(declaration);
+    if (!nullable) {
+      String primitive = PRIMITIVE_TYPES.get(name);
+      if (primitive != null) {
+        return primitive;
+      }
+    }
+    String javaType = JAVA_TYPES.get(name);
+    if (javaType != null) {
+      return javaType;
+    }
+    if (name.startsWith("kotlin.") && name.endsWith("Array")) {
+      return null;
+    }
+    return name;
+  }
+
+  private static boolean isComparable(KSClassDeclaration declaration) {
+    String name = qualifiedName(declaration);
+    if ("kotlin.Any".equals(name)) {
+      return false;
+    }
+    if ("kotlin.Comparable".equals(name) || "java.lang.Comparable".equals(name)) {
+      return true;
+    }
+    for (KSTypeReference superType : iterable(declaration.getSuperTypes())) {
+      KSClassDeclaration superDeclaration = classDeclaration(superType.resolve());
+      if (superDeclaration != null && isComparable(superDeclaration)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if the symbol has one of the annotations (checking the short name before resolving).
+   */
+  private static boolean hasAnnotation(KSAnnotated annotated, String... annotations) {
+    for (KSAnnotation annotation : iterable(annotated.getAnnotations())) {
+      if (matches(annotation, annotations)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(KSAnnotation annotation, String... annotations) {
+    String shortName = annotation.getShortName().asString();
+    for (String name : annotations) {
+      if (name.endsWith("." + shortName)) {
+        KSDeclaration declaration = annotation.getAnnotationType().resolve().getDeclaration();
+        if (name.equals(qualifiedName(declaration))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the value of the annotation attribute (null when not annotated or not set).
+   */
+  private static Object annotationValue(KSAnnotated annotated, String annotationName, String attribute) {
+    for (KSAnnotation annotation : iterable(annotated.getAnnotations())) {
+      if (matches(annotation, annotationName)) {
+        for (KSValueArgument argument : annotation.getArguments()) {
+          if (argument.getName() != null && attribute.equals(argument.getName().asString())) {
+            return argument.getValue();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Write the kotlin generated source for the given originating source file.
+   */
+  void writeSource(KSFile origin, String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+    ProcessingEvents.Span event = events.fileWrite(timing.name(), fileName);
+    long start = System.nanoTime();
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    Dependencies dependencies = (origin == null) ? new Dependencies(false) : new Dependencies(false, origin);
+    String name = fileName.substring(0, fileName.lastIndexOf('.'));
+    try (OutputStream os = codeGenerator.createNewFile(dependencies, packageName, name, "kt")) {
+      os.write(bytes);
+    }
+    timing.write(System.nanoTime() - start, bytes.length);
+    event.end(1, bytes.length);
+  }
+
+  /**
+   * Return the dependencies of the generated ModuleInfoLoader (aggregating the registered classes).
+   */
+  private Dependencies moduleDependencies() {
+    return new Dependencies(true, moduleFiles.toArray(new KSFile[0]));
+  }
+
+  @Override
+  public Writer createSourceWriter(String className) throws IOException {
+    int pos = className.lastIndexOf('.');
+    OutputStream os = codeGenerator.createNewFile(moduleDependencies(), className.substring(0, pos), className.substring(pos + 1), "java");
+    return new OutputStreamWriter(os, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public OutputStream createResource(String path) throws IOException {
+    // the path is the package, name and extension where the extension determines the output (resources)
+    int slash = path.lastIndexOf('/');
+    int dot = path.lastIndexOf('.');
+    String packageName = path.substring(0, slash).replace('/', '.');
+    return codeGenerator.createNewFile(moduleDependencies(), packageName, path.substring(slash + 1, dot), path.substring(dot + 1));
+  }
+
+  @Override
+  public boolean isLazyAlias() {
+    return lazyAlias;
+  }
+
+  @Override
+  public boolean isQueryMetrics() {
+    return queryMetrics;
+  }
+
+  @Override
+  public PropertyMode propertyMode() {
+    return propertyMode;
+  }
+
+  /**
+   * The association graph is not used with KSP (association properties of assoc beans are lazy).
+   */
+  @Override
+  public int maxDepth() {
+    return 0;
+  }
+
+  @Override
+  public boolean isEntityNames() {
+    return entityNames;
+  }
+
+  @Override
+  public boolean isPreload() {
+    return preload;
+  }
+
+  @Override
+  public boolean isGeneratedAvailable() {
+    return generatedAnnotation != null;
+  }
+
+  @Override
+  public String getGeneratedAnnotation() {
+    return generatedAnnotation;
+  }
+
+  @Override
+  public EntityTiming entityTiming(String name) {
+    return new EntityTiming(name);
+  }
+
+  @Override
+  public ProcessingEvents events() {
+    return events;
+  }
+
+  @Override
+  public ModuleRegistry module() {
+    return module;
+  }
+
+  @Override
+  public void logError(String msg) {
+    logger.error(msg, null);
+  }
+
+  void logError(KSNode symbol, String msg) {
+    logger.error(msg, symbol);
+  }
+
+  /**
+   * Log a info message.
+   */
+  void logNote(String msg, Object... args) {
+    logger.info(String.format(msg, args), null);
+  }
+}
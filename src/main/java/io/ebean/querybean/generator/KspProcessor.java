@@ -0,0 +1,90 @@
+package io.ebean.querybean.generator;
+
+import com.google.devtools.ksp.processing.Resolver;
+import com.google.devtools.ksp.processing.SymbolProcessor;
+import com.google.devtools.ksp.symbol.KSAnnotated;
+import com.google.devtools.ksp.symbol.KSClassDeclaration;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * KSP frontend generating the query beans and the ModuleInfoLoader from the KSP symbols
+ * (such that Kotlin only projects do not require kapt and its Java stubs).
+ * <p>
+ * Each query bean is generated from a single source file (isolating) and the ModuleInfoLoader
+ * with its services, manifest and index files aggregates the source files of the registered classes.
+ */
+class KspProcessor implements SymbolProcessor {
+
+  private final KspContext context;
+
+  private int round;
+
+  private int count;
+
+  KspProcessor(KspContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public List<KSAnnotated> process(Resolver resolver) {
+    ProcessingEvents.Span event = context.events().round(++round);
+    context.startRound(resolver);
+    int entities = processEntities();
+    processOthers(Constants.CONVERTER);
+    processOthers(Constants.EBEAN_COMPONENT);
+    event.end(entities, 0);
+    count += entities;
+    return Collections.emptyList();
+  }
+
+  private int processEntities() {
+    int entities = 0;
+    for (KSClassDeclaration declaration : context.annotatedClasses(Constants.EMBEDDABLE)) {
+      generateQueryBeans(declaration);
+      entities++;
+    }
+    for (KSClassDeclaration declaration : context.annotatedClasses(Constants.ENTITY)) {
+      generateQueryBeans(declaration);
+      entities++;
+    }
+    return entities;
+  }
+
+  private void generateQueryBeans(KSClassDeclaration declaration) {
+    try {
+      context.addEntity(declaration);
+      SimpleQueryBeanWriter beanWriter = new SimpleQueryBeanWriter(new KspBeanModel(declaration, context), context);
+      beanWriter.gather();
+      beanWriter.write();
+    } catch (Throwable e) {
+      context.logError(declaration, "Error generating query beans: " + e);
+    }
+  }
+
+  private void processOthers(String annotation) {
+    for (KSClassDeclaration declaration : context.annotatedClasses(annotation)) {
+      context.addOther(declaration);
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (context.hasModuleClasses()) {
+      try {
+        new SimpleModuleInfoWriter(context).write();
+      } catch (Throwable e) {
+        context.logError("Failed to write ModuleInfoLoader " + e.getMessage());
+      }
+    }
+    if (count > 0) {
+      context.logNote("Ebean KSP generated %s query beans - entity-packages: %s", count, context.module().getAllEntityPackages());
+    }
+  }
+
+  @Override
+  public void onError() {
+    // do nothing
+  }
+}
@@ -0,0 +1,18 @@
+package io.ebean.querybean.generator;
+
+import com.google.devtools.ksp.processing.SymbolProcessor;
+import com.google.devtools.ksp.processing.SymbolProcessorEnvironment;
+import com.google.devtools.ksp.processing.SymbolProcessorProvider;
+
+/**
+ * Provides the KSP frontend (an alternative to kapt running {@link Processor} and {@link ModuleInfoProcessor}).
+ * <p>
+ * Takes the same querybean options (via ksp arg) other than those of the kapt output.
+ */
+public class KspProcessorProvider implements SymbolProcessorProvider {
+
+  @Override
+  public SymbolProcessor create(SymbolProcessorEnvironment environment) {
+    return new KspProcessor(new KspContext(environment));
+  }
+}
@@ -10,10 +10,16 @@ public interface LangAdapter {
 
   void rootBeanConstructor(Append writer, String shortName, String dbName);
 
+  void rootBeanFind(Append writer, String shortName);
+
   void assocBeanConstructor(Append writer, String shortName);
 
   void fetch(Append writer, String origShortName);
 
   void fieldDefn(Append writer, String propertyName, String typeDefn);
 
+  void initFieldDefn(Append writer, String propertyName, String typeDefn, boolean lazy, boolean assocBean);
+
+  void lazyFieldDefn(Append writer, String propertyName, String typeDefn, boolean assocBean);
+
 }
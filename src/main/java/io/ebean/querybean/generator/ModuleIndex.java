@@ -0,0 +1,200 @@
+package io.ebean.querybean.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary index of the registered entities (with db name) and other classes.
+ * <p>
+ * Written to the class output along with the ModuleInfoLoader and read back on partial
+ * compile instead of resolving the previous ModuleInfoLoader and parsing its annotation.
+ * <p>
+ * The class names are grouped by package and the db names are held in a table referenced
+ * by index. The content is followed by a CRC32 fingerprint such that a truncated or
+ * otherwise corrupt index is detected and ignored.
+ * <p>
+ * There are no per entity fingerprints. The entries are kept or dropped based on the class
+ * they resolve to in the current compilation (see ProcessingContext.readModuleInfo()).
+ */
+class ModuleIndex {
+
+  private static final int MAGIC = 0x45514249;
+
+  private static final int VERSION = 1;
+
+  /**
+   * Entity class to db name (null for the default database).
+   */
+  private final Map<String, String> entities;
+
+  private final Set<String> others;
+
+  ModuleIndex(Map<String, String> entities, Set<String> others) {
+    this.entities = entities;
+    this.others = others;
+  }
+
+  /**
+   * Return the entity classes with their db name (null for the default database).
+   */
+  Map<String, String> entities() {
+    return entities;
+  }
+
+  /**
+   * Return the other classes (converters, components etc).
+   */
+  Set<String> others() {
+    return others;
+  }
+
+  /**
+   * Write the index to the given stream (which is not closed).
+   */
+  void write(OutputStream os) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(buffer);
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+
+    List<String> dbNames = new ArrayList<>(new TreeSet<>(nonNullValues()));
+    out.writeShort(dbNames.size());
+    for (String dbName : dbNames) {
+      out.writeUTF(dbName);
+    }
+    Map<String, List<String>> entityPackages = byPackage(entities.keySet());
+    out.writeInt(entityPackages.size());
+    for (Map.Entry<String, List<String>> entry : entityPackages.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (String name : entry.getValue()) {
+        out.writeUTF(name);
+        String dbName = entities.get(qualify(entry.getKey(), name));
+        // zero for the default database
+        out.writeShort(dbName == null ? 0 : dbNames.indexOf(dbName) + 1);
+      }
+    }
+    Map<String, List<String>> otherPackages = byPackage(others);
+    out.writeInt(otherPackages.size());
+    for (Map.Entry<String, List<String>> entry : otherPackages.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().size());
+      for (String name : entry.getValue()) {
+        out.writeUTF(name);
+      }
+    }
+    out.flush();
+
+    byte[] content = buffer.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(content, 0, content.length);
+    DataOutputStream target = new DataOutputStream(os);
+    target.write(content);
+    target.writeLong(crc.getValue());
+    target.flush();
+  }
+
+  /**
+   * Read the index from the given stream throwing IOException when it is not a valid index.
+   */
+  static ModuleIndex read(InputStream is) throws IOException {
+    byte[] bytes = readAll(is);
+    if (bytes.length < 14) {
+      throw new IOException("Invalid index, length " + bytes.length);
+    }
+    int length = bytes.length - 8;
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, length);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    in.skipBytes(length);
+    if (in.readLong() != crc.getValue()) {
+      throw new IOException("Invalid index, fingerprint mismatch");
+    }
+
+    in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Invalid index, bad magic");
+    }
+    int version = in.readUnsignedShort();
+    if (version != VERSION) {
+      throw new IOException("Unsupported index version " + version);
+    }
+    int dbCount = in.readUnsignedShort();
+    String[] dbNames = new String[dbCount + 1];
+    for (int i = 1; i <= dbCount; i++) {
+      dbNames[i] = in.readUTF();
+    }
+    Map<String, String> entities = new LinkedHashMap<>();
+    int packageCount = in.readInt();
+    for (int i = 0; i < packageCount; i++) {
+      String pkg = in.readUTF();
+      int count = in.readInt();
+      for (int j = 0; j < count; j++) {
+        String name = in.readUTF();
+        int db = in.readUnsignedShort();
+        if (db > dbCount) {
+          throw new IOException("Invalid index, db name " + db);
+        }
+        entities.put(qualify(pkg, name), dbNames[db]);
+      }
+    }
+    Set<String> others = new LinkedHashSet<>();
+    int otherPackageCount = in.readInt();
+    for (int i = 0; i < otherPackageCount; i++) {
+      String pkg = in.readUTF();
+      int count = in.readInt();
+      for (int j = 0; j < count; j++) {
+        others.add(qualify(pkg, in.readUTF()));
+      }
+    }
+    return new ModuleIndex(entities, others);
+  }
+
+  private List<String> nonNullValues() {
+    List<String> values = new ArrayList<>();
+    for (String value : entities.values()) {
+      if (value != null) {
+        values.add(value);
+      }
+    }
+    return values;
+  }
+
+  private static Map<String, List<String>> byPackage(Set<String> classNames) {
+    Map<String, List<String>> packages = new TreeMap<>();
+    for (String className : new TreeSet<>(classNames)) {
+      int pos = className.lastIndexOf('.');
+      String pkg = pos > -1 ? className.substring(0, pos) : "";
+      packages.computeIfAbsent(pkg, s -> new ArrayList<>()).add(className.substring(pos + 1));
+    }
+    return packages;
+  }
+
+  private static String qualify(String pkg, String name) {
+    return pkg.isEmpty() ? name : pkg + "." + name;
+  }
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    byte[] buffer = new byte[8192];
+    int len;
+    while ((len = is.read(buffer)) != -1) {
+      out.write(buffer, 0, len);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,116 @@
+package io.ebean.querybean.generator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Registers the entity beans and other classes and generates the ModuleInfoLoader
+ * along with the services and manifest files.
+ * <p>
+ * This aggregates all the entities of the module (Gradle aggregating processor).
+ */
+public class ModuleInfoProcessor extends AbstractProcessor implements Constants {
+
+  static final String ENTITY_NAMES_OPTION = "querybean.entityNames";
+  static final String PRELOAD_OPTION = "querybean.preload";
+
+  private ProcessingContext processingContext;
+
+  public ModuleInfoProcessor() {
+  }
+
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> options = new LinkedHashSet<>();
+    options.add(Processor.INCREMENTAL_OPTION);
+    options.add(ENTITY_NAMES_OPTION);
+    options.add(PRELOAD_OPTION);
+    return options;
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.processingContext = new ProcessingContext(processingEnv, false);
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    Set<String> annotations = new LinkedHashSet<>();
+    annotations.add(ENTITY);
+    annotations.add(EMBEDDABLE);
+    annotations.add(CONVERTER);
+    annotations.add(EBEAN_COMPONENT);
+    annotations.add(MODULEINFO);
+    return annotations;
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latest();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+    processingContext.startRound();
+    if (!processingContext.isIncremental()) {
+      // Gradle reprocesses all the elements of aggregating processors, otherwise
+      // for partial compile add back the entities from the existing ModuleInfo
+      processingContext.readModuleInfo();
+    }
+    int count = processEntities(roundEnv);
+    processOthers(roundEnv);
+    final int loaded = processingContext.complete();
+    if (roundEnv.processingOver()) {
+      writeModuleInfoBean();
+    }
+    if (count > 0) {
+      String msg = "Ebean APT registered %s entities, loaded %s others - META-INF/ebean-generated-info.mf entity-packages: %s";
+      processingContext.logNote(msg, count, loaded, processingContext.module().getAllEntityPackages());
+    }
+    // not claimed, also processed by Processor
+    return false;
+  }
+
+  private int processEntities(RoundEnvironment roundEnv) {
+    int count = 0;
+    for (Element element : roundEnv.getElementsAnnotatedWith(processingContext.embeddableAnnotation())) {
+      processingContext.addEntity((TypeElement) element);
+      count++;
+    }
+    for (Element element : roundEnv.getElementsAnnotatedWith(processingContext.entityAnnotation())) {
+      processingContext.addEntity((TypeElement) element);
+      count++;
+    }
+    return count;
+  }
+
+  private void processOthers(RoundEnvironment round) {
+    processOthers(round, processingContext.converterAnnotation());
+    processOthers(round, processingContext.componentAnnotation());
+  }
+
+  private void processOthers(RoundEnvironment roundEnv, TypeElement otherType) {
+    if (otherType != null) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(otherType)) {
+        processingContext.addOther(element);
+      }
+    }
+  }
+
+  private void writeModuleInfoBean() {
+    try {
+      SimpleModuleInfoWriter writer = new SimpleModuleInfoWriter(processingContext);
+      writer.write();
+    } catch (Throwable e) {
+      processingContext.logError(null, "Failed to write ModuleInfoLoader " + e.getMessage());
+    }
+  }
+}
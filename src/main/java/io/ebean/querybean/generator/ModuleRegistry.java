@@ -0,0 +1,187 @@
+package io.ebean.querybean.generator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The entity and other classes registered for the generated ModuleInfoLoader.
+ * <p>
+ * Registered by the annotation processor or the KSP frontend.
+ */
+class ModuleRegistry {
+
+  /**
+   * All entity packages regardless of DB (for META-INF/ebean-generated-info.mf).
+   */
+  private final Set<String> allEntityPackages = new TreeSet<>();
+
+  private final Set<String> otherClasses = new TreeSet<>();
+
+  /**
+   * The DB name prefixed entities.
+   */
+  private final Set<String> prefixEntities = new TreeSet<>();
+
+  /**
+   * Entity classes for the default database.
+   */
+  private final Set<String> dbEntities = new TreeSet<>();
+
+  /**
+   * Entity classes for non default databases.
+   */
+  private final Map<String, Set<String>> otherDbEntities = new TreeMap<>();
+
+  /**
+   * All loaded entities regardless of db (to detect ones we add back from loadedPrefixEntities).
+   */
+  private final Set<String> loaded = new HashSet<>();
+
+  /**
+   * The embeddable classes (that have no root query bean).
+   */
+  private final Set<String> embeddables = new HashSet<>();
+
+  /**
+   * The binary names of the nested classes (that differ from their canonical name).
+   */
+  private final Map<String, String> binaryNames = new HashMap<>();
+
+  /**
+   * The package for the generated ModuleInfoLoader.
+   */
+  private String factoryPackage;
+
+  /**
+   * Register an entity with optional dbName.
+   */
+  void addEntity(String beanFullName, String dbName) {
+
+    loaded.add(beanFullName);
+    final String pkg = packageOf(beanFullName);
+    if (pkg != null) {
+      allEntityPackages.add(pkg);
+      updateFactoryPackage(pkg);
+    }
+    if (dbName != null) {
+      prefixEntities.add(dbName + ":" + beanFullName);
+      otherDbEntities.computeIfAbsent(dbName, s -> new TreeSet<>()).add(beanFullName);
+    } else {
+      prefixEntities.add(beanFullName);
+      dbEntities.add(beanFullName);
+    }
+  }
+
+  /**
+   * Return true if the entity has been registered.
+   */
+  boolean isLoaded(String beanFullName) {
+    return loaded.contains(beanFullName);
+  }
+
+  /**
+   * Register an other class (converter or component).
+   */
+  void addOther(String className) {
+    otherClasses.add(className);
+  }
+
+  /**
+   * Register the class as embeddable.
+   */
+  void addEmbeddable(String className) {
+    embeddables.add(className);
+  }
+
+  /**
+   * Return true if the class is embeddable (has no root query bean).
+   */
+  boolean isEmbeddable(String className) {
+    return embeddables.contains(className);
+  }
+
+  /**
+   * Register the binary name of the class (as loaded by name, e.g. org.foo.Outer$Inner).
+   */
+  void addBinaryName(String className, String binaryName) {
+    if (!className.equals(binaryName)) {
+      binaryNames.put(className, binaryName);
+    }
+  }
+
+  /**
+   * Return true if the class is nested (its binary name differs from its canonical name).
+   */
+  boolean isNested(String className) {
+    return binaryNames.containsKey(className);
+  }
+
+  /**
+   * Return the binary name of the class.
+   */
+  String binaryName(String className) {
+    return binaryNames.getOrDefault(className, className);
+  }
+
+  /**
+   * Return the index of the registered entities and other classes.
+   */
+  ModuleIndex moduleIndex() {
+    Map<String, String> entities = new TreeMap<>();
+    for (String entity : dbEntities) {
+      entities.put(entity, null);
+    }
+    for (Map.Entry<String, Set<String>> entry : otherDbEntities.entrySet()) {
+      for (String entity : entry.getValue()) {
+        entities.put(entity, entry.getKey());
+      }
+    }
+    return new ModuleIndex(entities, otherClasses);
+  }
+
+  private String packageOf(String beanFullName) {
+    final int pos = beanFullName.lastIndexOf('.');
+    if (pos > -1) {
+      return beanFullName.substring(0, pos);
+    }
+    return null;
+  }
+
+  private void updateFactoryPackage(String pkg) {
+    if (pkg != null && (factoryPackage == null || factoryPackage.length() > pkg.length())) {
+      factoryPackage = pkg;
+    }
+  }
+
+  boolean hasOtherClasses() {
+    return !otherClasses.isEmpty();
+  }
+
+  Set<String> getOtherClasses() {
+    return otherClasses;
+  }
+
+  Set<String> getPrefixEntities() {
+    return prefixEntities;
+  }
+
+  Set<String> getDbEntities() {
+    return dbEntities;
+  }
+
+  Map<String, Set<String>> getOtherDbEntities() {
+    return otherDbEntities;
+  }
+
+  Set<String> getAllEntityPackages() {
+    return allEntityPackages;
+  }
+
+  String getFactoryPackage() {
+    return factoryPackage != null ? factoryPackage : "unknown";
+  }
+}
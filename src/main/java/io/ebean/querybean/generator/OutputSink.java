@@ -0,0 +1,38 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.Element;
+import java.io.IOException;
+
+/**
+ * Destination for the generated kotlin source files.
+ */
+interface OutputSink {
+
+  /**
+   * Write the generated source file.
+   *
+   * @param origin      the element the file is generated from (the entity)
+   * @param packageName the package of the generated source
+   * @param fileName    the file name (e.g. QCustomer.kt)
+   * @param content     the generated source
+   * @param timing      the timing of the entity the directory creation and write is added to
+   */
+  void write(Element origin, String packageName, String fileName, String content, EntityTiming timing) throws IOException;
+
+  /**
+   * Complete writing when processing is over (for sinks that write all the sources together).
+   */
+  default void close() throws IOException {
+    // do nothing by default
+  }
+
+  /**
+   * Return the number of files written.
+   */
+  int written();
+
+  /**
+   * Return the number of files skipped as their content was unchanged.
+   */
+  int skipped();
+}
@@ -14,6 +14,7 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.WildcardType;
@@ -22,26 +23,28 @@ import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
-import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.LineNumberReader;
 import java.io.Reader;
+import java.io.Writer;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.stream.Stream;
 
 /**
  * Context for the source generation.
  */
-class ProcessingContext implements Constants {
+class ProcessingContext implements Constants, GeneratorContext {
 
   private final ProcessingEnvironment processingEnv;
   private final String generatedSources;
@@ -52,48 +55,128 @@ class ProcessingContext implements Constants {
   private final Elements elementUtils;
   private final String generatedAnnotation;
 
+  /**
+   * Marker for a type that resolves to no property type (negative cache entry).
+   */
+  private static final PropertyType UNRESOLVED = new PropertyType("");
+
+  /**
+   * The default source archive name (in the build directory) with the querybean.srcjar option.
+   */
+  private static final String SRCJAR_NAME = "querybean-sources.srcjar";
+
   private final PropertyTypeMap propertyTypeMap = new PropertyTypeMap();
 
+  /**
+   * Property types resolved for the field types keyed by the canonical type (for this compilation).
+   */
+  private final Map<String, PropertyType> resolvedTypes = new HashMap<>();
+
+  private int resolvedHits;
+  private int resolvedMisses;
+  private int resolvedUncached;
+
   private final ReadModuleInfo readModuleInfo;
 
+  private final FindDbName findDbName;
+
+  /**
+   * The annotations of interest on elements (compared by identity and scanned once per element).
+   */
+  private final AnnotationIndex annotations;
+
+  private TypeElement entityAnnotation;
+  private TypeElement embeddableAnnotation;
+  private TypeElement converterAnnotation;
+  private TypeElement componentAnnotation;
+  private TypeElement projectionAnnotation;
+
+  /**
+   * The name of the projection annotation.
+   */
+  private final String projection;
+
+  /**
+   * Filtered fields of mapped superclasses (including their own superclasses) keyed by class name.
+   * <p>
+   * Shared by all the entities extending the superclass and cleared per round as it holds elements.
+   */
+  private final Map<String, List<VariableElement>> superclassFields = new HashMap<>();
+
+  /**
+   * Writes the generated kotlin source files (skipping unchanged ones), null for the module info context.
+   */
+  private final OutputSink sink;
+
+  /**
+   * True when generating for Gradle incremental annotation processing.
+   */
+  private final boolean incremental;
+
+  /**
+   * True when the companion _alias of the root query beans is lazily initialised.
+   */
+  private final boolean lazyAlias;
+
+  /**
+   * True when root query beans set a default label and notify a listener of executed queries.
+   */
+  private final boolean queryMetrics;
+
+  /**
+   * How the query bean property fields are declared and initialised.
+   */
+  private final PropertyMode propertyMode;
+
+  /**
+   * Maximum depth of the eagerly initialised association graph (0 when not bounded by the association graph).
+   */
+  private final int maxDepth;
+
   /**
-   * All entity packages regardless of DB (for META-INF/ebean-generated-info.mf).
+   * The association graph (with the querybean.maxDepth option).
    */
-  private final Set<String> allEntityPackages = new TreeSet<>();
+  private final AssocGraph assocGraph = new AssocGraph(this);
 
-  private final Set<String> otherClasses = new TreeSet<>();
+  /**
+   * True when the generated ModuleInfoLoader loads the entity classes by name.
+   */
+  private final boolean entityNames;
 
   /**
-   * The DB name prefixed entities.
+   * True when the generated ModuleInfoLoader includes the parallel preload entry point.
    */
-  private final Set<String> prefixEntities = new TreeSet<>();
+  private final boolean preload;
 
   /**
-   * Entity classes for the default database.
+   * Per round and per entity timings (reported with the querybean.timing option).
    */
-  private final Set<String> dbEntities = new TreeSet<>();
+  private final BuildTimings timings;
 
   /**
-   * Entity classes for non default databases.
+   * JFR events of the processing phases (no-op when jdk.jfr is not available).
    */
-  private final Map<String, Set<String>> otherDbEntities = new TreeMap<>();
+  private final ProcessingEvents events = ProcessingEvents.create();
 
   /**
-   * All loaded entities regardless of db (to detect ones we add back from loadedPrefixEntities).
+   * The registered entity and other classes.
    */
-  private final Set<String> loaded = new HashSet<>();
+  private final ModuleRegistry module = new ModuleRegistry();
 
   /**
-   * For partial compile the previous list of prefixed entity classes.
+   * For partial compile the previous entity classes (with db name) to add back.
    */
-  private List<String> loadedPrefixEntities = new ArrayList<>(); ;
+  private final Map<String, String> previousEntities = new LinkedHashMap<>();
 
   /**
-   * The package for the generated ModuleInfoLoader.
+   * Set when the previous entities and other classes have been read (once per compilation).
    */
-  private String factoryPackage;
+  private boolean moduleInfoRead;
 
-  ProcessingContext(ProcessingEnvironment processingEnv) {
+  /**
+   * Create the context, with writeSources false for ModuleInfoProcessor as it writes no query beans (no sink).
+   */
+  ProcessingContext(ProcessingEnvironment processingEnv, boolean writeSources) {
     this.processingEnv = processingEnv;
     this.typeUtils = processingEnv.getTypeUtils();
     this.filer = processingEnv.getFiler();
@@ -103,23 +186,75 @@ class ProcessingContext implements Constants {
     boolean jdk8 = processingEnv.getSourceVersion().compareTo(SourceVersion.RELEASE_8) <= 0;
     this.generatedAnnotation = generatedAnnotation(jdk8);
     this.generatedSources = initGeneratedSources(processingEnv);
+    this.incremental = Boolean.parseBoolean(processingEnv.getOptions().get(Processor.INCREMENTAL_OPTION));
+    this.sink = writeSources ? initSink(processingEnv) : null;
+    this.lazyAlias = Boolean.parseBoolean(processingEnv.getOptions().get(Processor.LAZY_ALIAS_OPTION));
+    this.queryMetrics = Boolean.parseBoolean(processingEnv.getOptions().get(Processor.QUERY_METRICS_OPTION));
+    this.propertyMode = initPropertyMode(processingEnv);
+    this.maxDepth = initMaxDepth(processingEnv);
+    this.entityNames = Boolean.parseBoolean(processingEnv.getOptions().get(ModuleInfoProcessor.ENTITY_NAMES_OPTION));
+    this.preload = Boolean.parseBoolean(processingEnv.getOptions().get(ModuleInfoProcessor.PRELOAD_OPTION));
+    this.timings = initTimings(processingEnv);
     this.readModuleInfo = new ReadModuleInfo(this);
+    this.findDbName = new FindDbName(typeUtils);
+    this.projection = initProjection(processingEnv);
+    this.annotations = new AnnotationIndex(elementUtils, projection);
+    resolveAnnotations();
+  }
+
+  /**
+   * Resolve the annotation types (per round as JDK 8 javac uses new symbols each round).
+   */
+  private void resolveAnnotations() {
+    this.entityAnnotation = elementUtils.getTypeElement(ENTITY);
+    this.embeddableAnnotation = elementUtils.getTypeElement(EMBEDDABLE);
+    this.converterAnnotation = elementUtils.getTypeElement(CONVERTER);
+    this.componentAnnotation = elementUtils.getTypeElement(EBEAN_COMPONENT);
+    this.projectionAnnotation = elementUtils.getTypeElement(projection);
+  }
+
+  /**
+   * Start a processing round clearing the caches that hold elements.
+   */
+  void startRound() {
+    superclassFields.clear();
+    annotations.clear();
+    resolveAnnotations();
   }
 
   TypeElement entityAnnotation() {
-    return elementUtils.getTypeElement(ENTITY);
+    return entityAnnotation;
   }
 
   TypeElement embeddableAnnotation() {
-    return elementUtils.getTypeElement(EMBEDDABLE);
+    return embeddableAnnotation;
   }
 
   TypeElement converterAnnotation() {
-    return elementUtils.getTypeElement(CONVERTER);
+    return converterAnnotation;
   }
 
   TypeElement componentAnnotation() {
-    return elementUtils.getTypeElement(EBEAN_COMPONENT);
+    return componentAnnotation;
+  }
+
+  private String initProjection(ProcessingEnvironment processingEnv) {
+    String option = processingEnv.getOptions().get(Processor.PROJECTION_OPTION);
+    return option == null || option.trim().isEmpty() ? PROJECTION : option.trim();
+  }
+
+  /**
+   * Return the name of the projection annotation (querybean.projection option, by default io.ebean.querybean.Projection).
+   */
+  String projectionName() {
+    return projection;
+  }
+
+  /**
+   * Return the Projection annotation (null when not on the classpath).
+   */
+  TypeElement projectionAnnotation() {
+    return projectionAnnotation;
   }
 
   private String generatedAnnotation(boolean jdk8) {
@@ -134,15 +269,225 @@ class ProcessingContext implements Constants {
     return (generatedDir != null) ? generatedDir : "target/generated-sources/kapt/compile";
   }
 
+  private OutputSink initSink(ProcessingEnvironment processingEnv) {
+    if (incremental) {
+      return new FilerSink(filer);
+    }
+    String srcjar = processingEnv.getOptions().get(Processor.SRCJAR_OPTION);
+    if (srcjar == null || "false".equalsIgnoreCase(srcjar)) {
+      return new DirectorySink(generatedSources);
+    }
+    if ("true".equalsIgnoreCase(srcjar)) {
+      return new ArchiveSink(new File(buildDir(generatedSources), SRCJAR_NAME), this::isSourceOrigin);
+    }
+    return new ArchiveSink(new File(srcjar), this::isSourceOrigin);
+  }
+
+  /**
+   * Return true if the class exists and still generates sources (entity, embeddable or projection).
+   */
+  private boolean isSourceOrigin(String className) {
+    TypeElement type = elementUtils.getTypeElement(className);
+    return type != null && (isEntity(type) || isEmbeddable(type) || isProjection(type));
+  }
+
+  /**
+   * Return the build directory (target or build) as the parent of the generated sources directories.
+   */
+  static File buildDir(String generatedSourcesDir) {
+    File dir = new File(generatedSourcesDir).getAbsoluteFile();
+    for (File current = dir; current != null; current = current.getParentFile()) {
+      if (current.getName().startsWith("generated") && current.getParentFile() != null) {
+        return current.getParentFile();
+      }
+    }
+    return dir;
+  }
+
+  private PropertyMode initPropertyMode(ProcessingEnvironment processingEnv) {
+    String option = processingEnv.getOptions().get(Processor.PROPERTIES_OPTION);
+    PropertyMode mode = PropertyMode.of(option);
+    if (mode == null) {
+      logNote("Ignoring invalid " + Processor.PROPERTIES_OPTION + " option value " + option);
+      return PropertyMode.LATEINIT;
+    }
+    return mode;
+  }
+
+  private int initMaxDepth(ProcessingEnvironment processingEnv) {
+    String option = processingEnv.getOptions().get(Processor.MAX_DEPTH_OPTION);
+    if (option == null) {
+      return 0;
+    }
+    if (propertyMode != PropertyMode.INIT || incremental) {
+      logNote("Ignoring " + Processor.MAX_DEPTH_OPTION + " option, only used with " + Processor.PROPERTIES_OPTION + "=init and not incremental");
+      return 0;
+    }
+    try {
+      int depth = Integer.parseInt(option.trim());
+      if (depth > 0) {
+        return depth;
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    logNote("Ignoring invalid " + Processor.MAX_DEPTH_OPTION + " option value " + option);
+    return 0;
+  }
+
+  private BuildTimings initTimings(ProcessingEnvironment processingEnv) {
+    String top = processingEnv.getOptions().get(Processor.TIMING_TOP_OPTION);
+    try {
+      return new BuildTimings(processingEnv.getOptions().get(Processor.TIMING_OPTION), top == null ? 10 : Integer.parseInt(top.trim()), generatedSources);
+    } catch (NumberFormatException e) {
+      logNote("Ignoring invalid " + Processor.TIMING_TOP_OPTION + " option value " + top);
+      return new BuildTimings(processingEnv.getOptions().get(Processor.TIMING_OPTION), 10, generatedSources);
+    }
+  }
+
   private boolean isTypeAvailable(String canonicalName) {
     return null != elementUtils.getTypeElement(canonicalName);
   }
 
   /**
-   * Return the base directory to put the kotlin generated source.
+   * Return true when generating for Gradle incremental annotation processing.
+   * <p>
+   * Query beans are then written via the Filer with the entity as originating element.
+   */
+  boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Return the maximum depth of the eagerly initialised association graph (0 when not bounded by the association graph).
    */
-  String generatedSourcesDir() {
-    return generatedSources;
+  @Override
+  public int maxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Return the longest association path from the associated bean of an association property type
+   * (0 when not an association or the association graph is not used).
+   */
+  int assocHeight(PropertyType type) {
+    if (maxDepth == 0 || !(type instanceof PropertyTypeAssoc)) {
+      return 0;
+    }
+    return assocGraph.height(((PropertyTypeAssoc) type).targetType());
+  }
+
+  /**
+   * Log the beans that are part of association cycles (with the querybean.maxDepth option).
+   */
+  void logAssocCycles() {
+    if (!assocGraph.cyclic().isEmpty()) {
+      logNote("Ebean APT association cycles (lazily initialised) through: %s", assocGraph.cyclic());
+    }
+  }
+
+  TypeElement typeElement(String canonicalName) {
+    return elementUtils.getTypeElement(canonicalName);
+  }
+
+  /**
+   * Return true when the companion _alias of the root query beans is lazily initialised.
+   */
+  @Override
+  public boolean isLazyAlias() {
+    return lazyAlias;
+  }
+
+  /**
+   * Return true when root query beans set a default label and notify a listener of executed queries.
+   */
+  @Override
+  public boolean isQueryMetrics() {
+    return queryMetrics;
+  }
+
+  /**
+   * Return how the query bean property fields are declared and initialised.
+   */
+  @Override
+  public PropertyMode propertyMode() {
+    return propertyMode;
+  }
+
+  /**
+   * Return true when the generated ModuleInfoLoader loads the entity classes by name.
+   */
+  @Override
+  public boolean isEntityNames() {
+    return entityNames;
+  }
+
+  /**
+   * Return true when the generated ModuleInfoLoader includes the parallel preload entry point.
+   */
+  @Override
+  public boolean isPreload() {
+    return preload;
+  }
+
+  /**
+   * Write the kotlin generated source for the given originating element.
+   */
+  void writeSource(Element origin, String packageName, String fileName, String content, EntityTiming timing) throws IOException {
+    ProcessingEvents.Span event = events.fileWrite(timing.name(), fileName);
+    long bytes = timing.bytes();
+    sink.write(origin, packageName, fileName, content, timing);
+    event.end(1, timing.bytes() - bytes);
+  }
+
+  /**
+   * Return the (JFR) events of the processing phases.
+   */
+  @Override
+  public ProcessingEvents events() {
+    return events;
+  }
+
+  /**
+   * Return the timing for the entity (reported with the querybean.timing option).
+   */
+  @Override
+  public EntityTiming entityTiming(String name) {
+    return timings.entity(name);
+  }
+
+  /**
+   * Add the timing of a processing round.
+   */
+  void roundTiming(int entityCount, long nanos) {
+    timings.round(entityCount, nanos);
+  }
+
+  /**
+   * Write the timing report when enabled via the querybean.timing option.
+   */
+  void reportTimings() {
+    timings.report(this);
+  }
+
+  /**
+   * Complete writing the generated sources (the source archive with the querybean.srcjar option).
+   */
+  void closeSources() {
+    try {
+      sink.close();
+    } catch (IOException e) {
+      logError(null, "Failed to write generated query bean sources " + e.getMessage());
+    }
+  }
+
+  /**
+   * Log a summary of the generated source files written and skipped (as unchanged).
+   */
+  void logSourceSummary() {
+    if (sink.written() + sink.skipped() > 0) {
+      logNote("Ebean APT query bean files written: %s, unchanged: %s", sink.written(), sink.skipped());
+    }
   }
 
   /**
@@ -175,7 +520,7 @@ class ProcessingContext implements Constants {
     TypeMirror superclass = typeElement.getSuperclass();
     Element mappedSuper = typeUtils.asElement(superclass);
     if (isMappedSuperOrInheritance(mappedSuper)) {
-      gatherProperties(fields, mappedSuper);
+      fields.addAll(superclassFields((TypeElement) mappedSuper));
     }
 
     List<VariableElement> allFields = ElementFilter.fieldsIn(element.getEnclosedElements());
@@ -186,6 +531,20 @@ class ProcessingContext implements Constants {
     }
   }
 
+  /**
+   * Return the fields of the mapped superclass (and its superclasses) resolving them once per round.
+   */
+  private List<VariableElement> superclassFields(TypeElement mappedSuper) {
+    String key = mappedSuper.getQualifiedName().toString();
+    List<VariableElement> fields = superclassFields.get(key);
+    if (fields == null) {
+      fields = new ArrayList<>();
+      gatherProperties(fields, mappedSuper);
+      superclassFields.put(key, fields);
+    }
+    return fields;
+  }
+
   /**
    * Not interested in static, transient or Ebean internal fields.
    */
@@ -203,64 +562,158 @@ class ProcessingContext implements Constants {
     return (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT));
   }
 
-  private static boolean hasAnnotations(Element element, String... annotations) {
-    return getAnnotation(element, annotations) != null;
-  }
-
-  private static AnnotationMirror getAnnotation(Element element, String... annotations) {
-    if (element == null) {
-      return null;
-    }
-    for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
-      final String name = annotationMirror.getAnnotationType().asElement().toString();
-      for (String annotation : annotations) {
-        if (annotation.equals(name)) {
-          return annotationMirror;
-        }
-      }
-    }
-    return null;
-  }
-
   private boolean isMappedSuperOrInheritance(Element mappedSuper) {
-    return hasAnnotations(mappedSuper, MAPPED_SUPERCLASS, INHERITANCE);
+    return annotations.has(mappedSuper, AnnotationIndex.MAPPED_SUPERCLASS_BIT | AnnotationIndex.INHERITANCE_BIT);
   }
 
   private boolean isEntityOrEmbedded(Element mappedSuper) {
-    return hasAnnotations(mappedSuper, ENTITY, EMBEDDABLE);
+    return annotations.has(mappedSuper, AnnotationIndex.ENTITY_BIT | AnnotationIndex.EMBEDDABLE_BIT);
   }
 
   boolean isEntity(Element element) {
-    return hasAnnotations(element, ENTITY);
+    return annotations.has(element, AnnotationIndex.ENTITY_BIT);
   }
 
   boolean isEmbeddable(Element element) {
-    return hasAnnotations(element, EMBEDDABLE);
+    return annotations.has(element, AnnotationIndex.EMBEDDABLE_BIT);
+  }
+
+  private boolean isProjection(Element element) {
+    return annotations.has(element, AnnotationIndex.PROJECTION_BIT);
+  }
+
+  /**
+   * Return true if the field or parameter is non-null (primitive or Kotlin non-null).
+   */
+  boolean isNonNull(Element element) {
+    return element.asType().getKind().isPrimitive() || annotations.has(element, AnnotationIndex.NOT_NULL_BIT);
   }
 
   /**
    * Find the DbName annotation and return name if found.
    */
   String findDbName(TypeElement element) {
-    return FindDbName.value(element, typeUtils);
+    return findDbName.value(element);
   }
 
   /**
    * Return true if it is a DbJson field.
    */
-  private static boolean dbJsonField(Element field) {
-    return hasAnnotations(field, DBJSON, DBJSONB);
+  private boolean dbJsonField(Element field) {
+    return annotations.has(field, AnnotationIndex.DBJSON_BIT);
   }
 
   /**
    * Return true if it is a DbArray field.
    */
-  private static boolean dbArrayField(Element field) {
-    return hasAnnotations(field, DBARRAY);
+  private boolean dbArrayField(Element field) {
+    return annotations.has(field, AnnotationIndex.DBARRAY_BIT);
   }
 
+  /**
+   * Return the property type for the field.
+   * <p>
+   * Unless the field has annotations that change the resolution (DbJson, DbArray, targetEntity) the
+   * result only depends on the field type and is cached keyed by the canonical type. The result for
+   * JDK, Kotlin and Joda types is also shared with the other compilations in the JVM.
+   * </p>
+   */
   PropertyType getPropertyType(VariableElement field) {
 
+    if (hasResolutionAnnotations(field)) {
+      resolvedUncached++;
+      return resolveWithEvent(field);
+    }
+    String key = field.asType().toString();
+    PropertyType type = resolvedTypes.get(key);
+    if (type != null) {
+      resolvedHits++;
+      return (type == UNRESOLVED) ? null : type;
+    }
+    boolean shared = PropertyTypeMap.isSharedResolution(key);
+    if (shared) {
+      type = PropertyTypeMap.resolved(key);
+      if (type != null) {
+        resolvedHits++;
+        resolvedTypes.put(key, type);
+        return type;
+      }
+    }
+    resolvedMisses++;
+    type = resolveWithEvent(field);
+    if (shared && type != null) {
+      PropertyTypeMap.putResolved(key, type);
+    }
+    resolvedTypes.put(key, (type == null) ? UNRESOLVED : type);
+    return type;
+  }
+
+  private PropertyType resolveWithEvent(VariableElement field) {
+    ProcessingEvents.Span event = events.typeResolution(field);
+    PropertyType type = resolvePropertyType(field);
+    event.end(type == null ? 0 : 1, 0);
+    return type;
+  }
+
+  /**
+   * Return the package of the given element.
+   */
+  String packageOf(Element element) {
+    return elementUtils.getPackageOf(element).getQualifiedName().toString();
+  }
+
+  /**
+   * Return the entity of the Projection annotation on the given DTO (null when not an entity).
+   */
+  TypeElement projectedEntity(Element dto) {
+    for (AnnotationMirror mirror : dto.getAnnotationMirrors()) {
+      if (projectionAnnotation != null && typeUtils.isSameType(mirror.getAnnotationType(), projectionAnnotation.asType())) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+          Object value = entry.getValue().getValue();
+          if (entry.getKey().getSimpleName().contentEquals("value") && value instanceof TypeMirror) {
+            Element entity = typeUtils.asElement((TypeMirror) value);
+            return isEntity(entity) ? (TypeElement) entity : null;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return true if the types are the same allowing for boxing (and ignoring type arguments).
+   */
+  boolean isSameBoxed(TypeMirror type, TypeMirror other) {
+    return typeUtils.isSameType(typeUtils.erasure(boxed(type)), typeUtils.erasure(boxed(other)));
+  }
+
+  private TypeMirror boxed(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return typeUtils.boxedClass((PrimitiveType) type).asType();
+    }
+    return type;
+  }
+
+  /**
+   * Return true if the field has annotations that affect the resolution of its property type.
+   */
+  private boolean hasResolutionAnnotations(Element field) {
+    return annotations.has(field, AnnotationIndex.DBJSON_BIT | AnnotationIndex.DBARRAY_BIT | AnnotationIndex.TARGET_ENTITY_BIT);
+  }
+
+  /**
+   * Log the hit rate of the property type resolution cache.
+   */
+  void logTypeCacheSummary() {
+    int lookups = resolvedHits + resolvedMisses;
+    if (lookups > 0) {
+      logNote("Ebean APT type resolution cache hits: %s, misses: %s, hit rate: %s%%, uncached: %s",
+        resolvedHits, resolvedMisses, (100 * resolvedHits) / lookups, resolvedUncached);
+    }
+  }
+
+  private PropertyType resolvePropertyType(VariableElement field) {
+
     TypeMirror typeMirror = field.asType();
 
     TypeMirror currentType = typeMirror;
@@ -283,8 +736,7 @@ class ProcessingContext implements Constants {
       // get generic parameter type
       DeclaredType declaredType = (DeclaredType) typeMirror;
       String fullType = typeDef(declaredType.getTypeArguments().get(0));
-      String shortName = langShortType(Split.shortName(fullType));
-      return new PropertyTypeArray(fullType, shortName);
+      return propertyTypeMap.arrayType(fullType);
     }
 
     Element fieldType = typeUtils.asElement(typeMirror);
@@ -296,12 +748,12 @@ class ProcessingContext implements Constants {
 
     if (fieldType.getKind() == ElementKind.ENUM) {
       String fullType = typeDef(typeMirror);
-      return new PropertyTypeEnum(fullType, Split.shortName(fullType));
+      return propertyTypeMap.enumType(fullType, Split.shortName(fullType));
     }
 
     if (isEntityOrEmbedded(fieldType)) {
       //  public QAssocContact<QCustomer> contacts;
-      return createPropertyTypeAssoc(typeDef(typeMirror));
+      return propertyTypeMap.assocType(typeDef(typeMirror));
     }
 
     PropertyType result = null;
@@ -315,14 +767,14 @@ class ProcessingContext implements Constants {
         }
         Element argElement = typeUtils.asElement(argType);
         if (isEntityOrEmbedded(argElement)) {
-          result = createPropertyTypeAssoc(typeDef(argElement.asType()));
+          result = propertyTypeMap.assocType(typeDef(argElement.asType()));
         } else {
           // look for targetEntity annotation attribute
           final String targetEntity = readTargetEntity(field);
           if (targetEntity != null) {
             final TypeElement element = elementUtils.getTypeElement(targetEntity);
             if (isEntityOrEmbedded(element)) {
-              result = createPropertyTypeAssoc(typeDef(element.asType()));
+              result = propertyTypeMap.assocType(typeDef(element.asType()));
             }
           }
         }
@@ -332,11 +784,7 @@ class ProcessingContext implements Constants {
     if (result != null) {
       return result;
     } else {
-      if (typeInstanceOf(typeMirror, "java.lang.Comparable")) {
-        return new PropertyTypeScalarComparable(typeDef(typeMirror));
-      } else {
-        return new PropertyTypeScalar(typeDef(typeMirror));
-      }
+      return propertyTypeMap.scalarType(typeDef(typeMirror), typeInstanceOf(typeMirror, "java.lang.Comparable"));
     }
   }
 
@@ -349,14 +797,18 @@ class ProcessingContext implements Constants {
       return true;
     }
 
-    return typeInstanceOf(typeElement.getSuperclass(), desiredInterface) ||
-      typeElement
-        .getInterfaces()
-        .stream()
-        .anyMatch(t -> typeInstanceOf(t, desiredInterface));
+    if (typeInstanceOf(typeElement.getSuperclass(), desiredInterface)) {
+      return true;
+    }
+    for (TypeMirror interfaceType : typeElement.getInterfaces()) {
+      if (typeInstanceOf(interfaceType, desiredInterface)) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private String readTargetEntity(Element declaredType) {
+  private static String readTargetEntity(Element declaredType) {
     for (AnnotationMirror annotation : declaredType.getAnnotationMirrors()) {
       final Object targetEntity = readTargetEntityFromAnnotation(annotation);
       if (targetEntity != null) {
@@ -375,46 +827,20 @@ class ProcessingContext implements Constants {
     return null;
   }
 
-  private String langShortType(String shortName) {
-    if ("Integer".equals(shortName)) {
-      return "Int";
-    }
-    return shortName;
-  }
-
-  /**
-   * Create the QAssoc PropertyType.
-   */
-  private PropertyType createPropertyTypeAssoc(String fullName) {
-
-    String[] split = Split.split(fullName);
-    String propertyName = "QAssoc" + split[1];
-    String packageName = packageAppend(split[0]);
-    return new PropertyTypeAssoc(propertyName, packageName);
-  }
-
-  /**
-   * Prepend the package to the suffix taking null into account.
-   */
-  private String packageAppend(String origPackage) {
-    if (origPackage == null) {
-      return "query.assoc";
-    } else {
-      return origPackage + "." + "query.assoc";
-    }
-  }
-
-  /**
-   * Create a file writer for the given class name.
-   */
-  JavaFileObject createWriter(String factoryClassName) throws IOException {
-    return filer.createSourceFile(factoryClassName);
+  @Override
+  public Writer createSourceWriter(String className) throws IOException {
+    return filer.createSourceFile(className).openWriter();
   }
 
   void logError(Element e, String msg, Object... args) {
     messager.printMessage(Diagnostic.Kind.ERROR, String.format(msg, args), e);
   }
 
+  @Override
+  public void logError(String msg) {
+    logError(null, msg);
+  }
+
   /**
    * Log a info message.
    */
@@ -422,45 +848,123 @@ class ProcessingContext implements Constants {
     messager.printMessage(Diagnostic.Kind.NOTE, String.format(msg, args));
   }
 
-  boolean isGeneratedAvailable() {
+  @Override
+  public boolean isGeneratedAvailable() {
     return generatedAnnotation != null;
   }
 
-  String getGeneratedAnnotation() {
+  @Override
+  public String getGeneratedAnnotation() {
     return generatedAnnotation;
   }
 
+  /**
+   * Read the previous entities and other classes to add back for partial compile.
+   * <p>
+   * This reads the module index (falling back to the previous ModuleInfoLoader) once and
+   * drops the classes that no longer exist or are no longer entities.
+   */
   void readModuleInfo() {
+    if (moduleInfoRead) {
+      return;
+    }
+    moduleInfoRead = true;
+    ModuleIndex index = readModuleIndex();
+    if (index == null) {
+      index = readPreviousModuleInfo();
+    }
+    if (index != null) {
+      int removed = 0;
+      for (Map.Entry<String, String> entry : index.entities().entrySet()) {
+        TypeElement type = elementUtils.getTypeElement(entry.getKey());
+        if (type != null && (isEntity(type) || isEmbeddable(type))) {
+          addBinaryName(type);
+          if (isEmbeddable(type)) {
+            module.addEmbeddable(entry.getKey());
+          }
+          previousEntities.put(entry.getKey(), entry.getValue());
+        } else {
+          removed++;
+        }
+      }
+      for (String other : index.others()) {
+        TypeElement type = elementUtils.getTypeElement(other);
+        if (type != null) {
+          addBinaryName(type);
+          module.addOther(other);
+        } else {
+          removed++;
+        }
+      }
+      if (removed > 0) {
+        logNote("Ebean APT removed %s deleted classes from the previous ModuleInfo", removed);
+      }
+    }
+  }
+
+  private ModuleIndex readModuleIndex() {
+    try {
+      FileObject fileObject = filer.getResource(StandardLocation.CLASS_OUTPUT, "", METAINF_INDEX);
+      if (fileObject != null) {
+        try (InputStream is = fileObject.openInputStream()) {
+          return ModuleIndex.read(is);
+        }
+      }
+    } catch (FileNotFoundException | NoSuchFileException e) {
+      // ignore - no index yet
+    } catch (IOException e) {
+      logNote("Ignoring module index %s - %s", METAINF_INDEX, e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Read the previous ModuleInfoLoader annotation (no module index, prior generator version).
+   */
+  private ModuleIndex readPreviousModuleInfo() {
     String factory = loadMetaInfServices();
     if (factory != null) {
       TypeElement factoryType = elementUtils.getTypeElement(factory);
       if (factoryType != null) {
-        // previous prefixed entities to add back for partial compile
         final ModuleMeta read = readModuleInfo.read(factoryType);
-        loadedPrefixEntities.addAll(read.getEntities());
-        otherClasses.addAll(read.getOther());
+        if (read != null) {
+          Map<String, String> entities = new LinkedHashMap<>();
+          for (String prefixEntity : read.getEntities()) {
+            // maybe split as dbName:entityClass
+            final int pos = prefixEntity.indexOf(':');
+            if (pos > -1) {
+              entities.put(prefixEntity.substring(pos + 1), prefixEntity.substring(0, pos));
+            } else {
+              entities.put(prefixEntity, null);
+            }
+          }
+          return new ModuleIndex(entities, new LinkedHashSet<>(read.getOther()));
+        }
       }
     }
+    return null;
   }
 
   /**
    * Register an entity with optional dbName.
    */
   void addEntity(String beanFullName, String dbName) {
+    module.addEntity(beanFullName, dbName);
+  }
 
-    loaded.add(beanFullName);
-    final String pkg = packageOf(beanFullName);
-    if (pkg != null) {
-      allEntityPackages.add(pkg);
-      updateFactoryPackage(pkg);
-    }
-    if (dbName != null) {
-      prefixEntities.add(dbName + ":" + beanFullName);
-      otherDbEntities.computeIfAbsent(dbName, s -> new TreeSet<>()).add(beanFullName);
-    } else {
-      prefixEntities.add(beanFullName);
-      dbEntities.add(beanFullName);
+  /**
+   * Register the entity (or embeddable) along with its binary name.
+   */
+  void addEntity(TypeElement element) {
+    addBinaryName(element);
+    if (isEmbeddable(element)) {
+      module.addEmbeddable(element.getQualifiedName().toString());
     }
+    addEntity(element.getQualifiedName().toString(), findDbName(element));
+  }
+
+  private void addBinaryName(TypeElement element) {
+    module.addBinaryName(element.getQualifiedName().toString(), elementUtils.getBinaryName(element).toString());
   }
 
   /**
@@ -468,83 +972,32 @@ class ProcessingContext implements Constants {
    */
   int complete() {
     int added = 0;
-    for (String oldPrefixEntity : loadedPrefixEntities) {
-      // maybe split as dbName:entityClass
-      final String[] prefixEntityClass = oldPrefixEntity.split(":");
-
-      String dbName = null;
-      String entityClass;
-      if (prefixEntityClass.length > 1) {
-        dbName = prefixEntityClass[0];
-        entityClass = prefixEntityClass[1];
-      } else {
-        entityClass = prefixEntityClass[0];
-      }
-      if (!loaded.contains(entityClass)) {
-        addEntity(entityClass, dbName);
+    for (Map.Entry<String, String> entry : previousEntities.entrySet()) {
+      if (!module.isLoaded(entry.getKey())) {
+        addEntity(entry.getKey(), entry.getValue());
         added++;
       }
     }
+    // all now registered, later rounds have nothing to add back
+    previousEntities.clear();
     return added;
   }
 
-  private String packageOf(String beanFullName) {
-    final int pos = beanFullName.lastIndexOf('.');
-    if (pos > -1) {
-      return beanFullName.substring(0, pos);
-    }
-    return null;
-  }
-
-  private void updateFactoryPackage(String pkg) {
-    if (pkg != null && (factoryPackage == null || factoryPackage.length() > pkg.length())) {
-      factoryPackage = pkg;
-    }
-  }
-
-  FileObject createMetaInfServicesWriter() throws IOException {
-    return createMetaInfWriter(METAINF_SERVICES_MODULELOADER);
-  }
-
-  FileObject createManifestWriter() throws IOException {
-    return createMetaInfWriter(Constants.METAINF_MANIFEST);
-  }
-
-  FileObject createMetaInfWriter(String target) throws IOException {
-    return filer.createResource(StandardLocation.CLASS_OUTPUT, "", target);
-  }
-
-  boolean hasOtherClasses() {
-    return !otherClasses.isEmpty();
-  }
-
-  Set<String> getOtherClasses() {
-    return otherClasses;
+  @Override
+  public OutputStream createResource(String path) throws IOException {
+    return filer.createResource(StandardLocation.CLASS_OUTPUT, "", path).openOutputStream();
   }
 
   void addOther(Element element) {
-    otherClasses.add(element.toString());
-  }
-
-  Set<String> getPrefixEntities() {
-    return prefixEntities;
-  }
-
-  Set<String> getDbEntities() {
-    return dbEntities;
-  }
-
-  Map<String, Set<String>> getOtherDbEntities() {
-    return otherDbEntities;
-  }
-
-
-  Set<String> getAllEntityPackages() {
-    return allEntityPackages;
+    if (element instanceof TypeElement) {
+      addBinaryName((TypeElement) element);
+    }
+    module.addOther(element.toString());
   }
 
-  String getFactoryPackage() {
-    return factoryPackage != null ? factoryPackage : "unknown";
+  @Override
+  public ModuleRegistry module() {
+    return module;
   }
 
   /**
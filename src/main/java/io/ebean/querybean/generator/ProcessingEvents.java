@@ -0,0 +1,89 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Events of the processing phases (rounds, entities, type resolution and file writes).
+ * <p>
+ * When the JVM supports Java Flight Recorder (jdk.jfr) these are recorded as JFR events such
+ * that a recording of the compiler (kapt worker, Gradle daemon) shows them on the same timeline
+ * as compilation and GC. Otherwise, and when the events are not enabled in the recording, the
+ * spans are no-ops.
+ */
+abstract class ProcessingEvents {
+
+  private static final String JFR_EVENTS = "io.ebean.querybean.generator.JfrEvents";
+
+  /**
+   * A started event that is committed by {@link #end(int, long)}.
+   */
+  interface Span {
+
+    /**
+     * End the event with a count (entities of a round, properties of an entity, 1 for a
+     * resolved property type) and the bytes written.
+     */
+    void end(int count, long bytes);
+  }
+
+  static final Span NO_SPAN = (count, bytes) -> {
+  };
+
+  static final ProcessingEvents NONE = new ProcessingEvents() {
+    @Override
+    Span round(int round) {
+      return NO_SPAN;
+    }
+
+    @Override
+    Span entity(String entity) {
+      return NO_SPAN;
+    }
+
+    @Override
+    Span typeResolution(Element field) {
+      return NO_SPAN;
+    }
+
+    @Override
+    Span fileWrite(String entity, String fileName) {
+      return NO_SPAN;
+    }
+  };
+
+  /**
+   * Return the JFR events when jdk.jfr is available and otherwise no-op events.
+   * <p>
+   * The JFR events are loaded reflectively as the event classes extend jdk.jfr.Event (and are
+   * only included when built with JDK 11+).
+   */
+  static ProcessingEvents create() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return (ProcessingEvents) Class.forName(JFR_EVENTS).getDeclaredConstructor().newInstance();
+    } catch (Throwable e) {
+      // jdk.jfr not available (Java 8 prior to 8u272) or JfrEvents not included in the build
+      return NONE;
+    }
+  }
+
+  /**
+   * Start the event for a processing round.
+   */
+  abstract Span round(int round);
+
+  /**
+   * Start the event for an entity (gathering through to writing its query beans).
+   */
+  abstract Span entity(String entity);
+
+  /**
+   * Start the event for resolving the property type of a field.
+   */
+  abstract Span typeResolution(Element field);
+
+  /**
+   * Start the event for writing a generated source file.
+   */
+  abstract Span fileWrite(String entity, String fileName);
+}
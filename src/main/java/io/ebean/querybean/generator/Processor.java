@@ -11,14 +11,36 @@ import java.util.Set;
 
 /**
  * Process compiled entity beans and generates 'query beans' for them.
+ * <p>
+ * Each query bean is generated from a single entity (isolating) with the generated
+ * ModuleInfoLoader written separately by {@link ModuleInfoProcessor} (aggregating).
  */
 public class Processor extends AbstractProcessor implements Constants {
 
   private static final String GENERATE_KOTLIN_CODE_OPTION = "generate.kotlin.code";
   private static final String KAPT_KOTLIN_GENERATED_OPTION = "kapt.kotlin.generated";
+  private static final String PARALLELISM_OPTION = "querybean.parallelism";
+  static final String INCREMENTAL_OPTION = "querybean.incremental";
+  static final String LAZY_ALIAS_OPTION = "querybean.lazyAlias";
+  static final String QUERY_METRICS_OPTION = "querybean.queryMetrics";
+  static final String PROPERTIES_OPTION = "querybean.properties";
+  static final String MAX_DEPTH_OPTION = "querybean.maxDepth";
+  static final String SRCJAR_OPTION = "querybean.srcjar";
+  static final String TIMING_OPTION = "querybean.timing";
+  static final String TIMING_TOP_OPTION = "querybean.timing.top";
+  static final String PROJECTION_OPTION = "querybean.projection";
+
+  /**
+   * Reported to Gradle (dynamic incremental processor) when query beans are written via the Filer.
+   */
+  private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
 
   private ProcessingContext processingContext;
 
+  private WritePipeline writePipeline;
+
+  private int round;
+
   public Processor() {
   }
 
@@ -28,13 +50,53 @@ public class Processor extends AbstractProcessor implements Constants {
     Set<String> options =  new LinkedHashSet<>();
     options.add(KAPT_KOTLIN_GENERATED_OPTION);
     options.add(GENERATE_KOTLIN_CODE_OPTION);
+    options.add(PARALLELISM_OPTION);
+    options.add(INCREMENTAL_OPTION);
+    options.add(LAZY_ALIAS_OPTION);
+    options.add(QUERY_METRICS_OPTION);
+    options.add(PROPERTIES_OPTION);
+    options.add(MAX_DEPTH_OPTION);
+    options.add(SRCJAR_OPTION);
+    options.add(TIMING_OPTION);
+    options.add(TIMING_TOP_OPTION);
+    options.add(PROJECTION_OPTION);
+    if (processingContext != null && processingContext.isIncremental()) {
+      options.add(GRADLE_ISOLATING);
+    }
     return options;
   }
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
-    this.processingContext = new ProcessingContext(processingEnv);
+    this.processingContext = new ProcessingContext(processingEnv, true);
+    this.writePipeline = new WritePipeline(processingContext, parallelism(processingEnv));
+  }
+
+  /**
+   * Return the number of threads used to render and write query beans (1 for serial).
+   */
+  private int parallelism(ProcessingEnvironment processingEnv) {
+    String parallelism = processingEnv.getOptions().get(PARALLELISM_OPTION);
+    if (parallelism == null) {
+      return 1;
+    }
+    int threads;
+    try {
+      threads = Integer.parseInt(parallelism.trim());
+    } catch (NumberFormatException e) {
+      threads = 0;
+    }
+    if (threads < 1) {
+      processingContext.logNote("Ignoring invalid " + PARALLELISM_OPTION + " option value " + parallelism);
+      return 1;
+    }
+    if (threads > 1 && processingContext.isIncremental()) {
+      // the Filer must only be used on the processor thread
+      processingContext.logNote("Ignoring " + PARALLELISM_OPTION + " option, not used with " + INCREMENTAL_OPTION);
+      return 1;
+    }
+    return threads;
   }
 
   @Override
@@ -42,9 +104,7 @@ public class Processor extends AbstractProcessor implements Constants {
     Set<String> annotations = new LinkedHashSet<>();
     annotations.add(ENTITY);
     annotations.add(EMBEDDABLE);
-    annotations.add(CONVERTER);
-    annotations.add(EBEAN_COMPONENT);
-    annotations.add(MODULEINFO);
+    annotations.add(processingContext == null ? PROJECTION : processingContext.projectionName());
     return annotations;
   }
 
@@ -56,18 +116,25 @@ public class Processor extends AbstractProcessor implements Constants {
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
 
-    processingContext.readModuleInfo();
+    long start = System.nanoTime();
+    ProcessingEvents.Span event = processingContext.events().round(++round);
+    processingContext.startRound();
     int count = processEntities(roundEnv);
-    processOthers(roundEnv);
-    final int loaded = processingContext.complete();
+    event.end(count, 0);
+    processingContext.roundTiming(count, System.nanoTime() - start);
     if (roundEnv.processingOver()) {
-      writeModuleInfoBean();
+      writePipeline.shutdown();
+      processingContext.closeSources();
+      processingContext.logSourceSummary();
+      processingContext.logTypeCacheSummary();
+      processingContext.logAssocCycles();
+      processingContext.reportTimings();
     }
     if (count > 0) {
-      String msg = "Ebean APT generated %s query beans, loaded %s others - META-INF/ebean-generated-info.mf entity-packages: %s";
-      processingContext.logNote(msg, count, loaded, processingContext.getAllEntityPackages());
+      processingContext.logNote("Ebean APT generated %s query beans", count);
     }
-    return true;
+    // not claimed, also processed by ModuleInfoProcessor
+    return false;
   }
 
   private int processEntities(RoundEnvironment roundEnv) {
@@ -80,36 +147,31 @@ public class Processor extends AbstractProcessor implements Constants {
       generateQueryBeans(element);
       count++;
     }
-    return count;
-  }
-
-  private void processOthers(RoundEnvironment round) {
-    processOthers(round, processingContext.converterAnnotation());
-    processOthers(round, processingContext.componentAnnotation());
-  }
-
-  private void processOthers(RoundEnvironment roundEnv, TypeElement otherType) {
-    if (otherType != null) {
-      for (Element element : roundEnv.getElementsAnnotatedWith(otherType)) {
-        processingContext.addOther(element);
+    writePipeline.await();
+    if (processingContext.projectionAnnotation() != null) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(processingContext.projectionAnnotation())) {
+        generateProjection(element);
       }
     }
+    return count;
   }
 
-  private void writeModuleInfoBean() {
+  private void generateProjection(Element element) {
     try {
-      SimpleModuleInfoWriter writer = new SimpleModuleInfoWriter(processingContext);
-      writer.write();
+      SimpleProjectionWriter projectionWriter = new SimpleProjectionWriter((TypeElement) element, processingContext);
+      if (projectionWriter.gather()) {
+        projectionWriter.write();
+      }
     } catch (Throwable e) {
-      processingContext.logError(null, "Failed to write ModuleInfoLoader " + e.getMessage());
+      processingContext.logError(element, "Error generating projection: " + e);
     }
   }
 
   private void generateQueryBeans(Element element) {
     try {
-      SimpleQueryBeanWriter beanWriter = new SimpleQueryBeanWriter((TypeElement) element, processingContext);
-      beanWriter.writeRootBean();
-      beanWriter.writeAssocBean();
+      SimpleQueryBeanWriter beanWriter = new SimpleQueryBeanWriter(new ElementBeanModel((TypeElement) element, processingContext), processingContext);
+      beanWriter.gather();
+      writePipeline.submit(element, beanWriter);
     } catch (Throwable e) {
       processingContext.logError(element, "Error generating query beans: " + e);
     }
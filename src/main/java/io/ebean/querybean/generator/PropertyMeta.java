@@ -1,5 +1,7 @@
 package io.ebean.querybean.generator;
 
+import java.util.Set;
+
 /**
  * Meta data for a property.
  */
@@ -15,18 +17,39 @@ class PropertyMeta {
    */
   private final PropertyType type;
 
+  /**
+   * For an association the longest association path from the associated bean
+   * ({@link AssocGraph#UNBOUNDED} when it reaches a cycle), 0 when not determined.
+   */
+  private final int assocHeight;
+
   /**
    * Construct given the property name and type.
    */
-  PropertyMeta(String name, PropertyType type) {
+  PropertyMeta(String name, PropertyType type, int assocHeight) {
     this.name = name;
     this.type = type;
+    this.assocHeight = assocHeight;
   }
 
   String getName() {
     return name;
   }
 
+  /**
+   * Return true if this is an associated bean property (the type is an assoc query bean).
+   */
+  boolean isAssociation() {
+    return type instanceof PropertyTypeAssoc;
+  }
+
+  /**
+   * Return the longest association path from the associated bean (0 when not determined).
+   */
+  int assocHeight() {
+    return assocHeight;
+  }
+
   /**
    * Return the type definition given the type short name and flag indicating if it is an associated bean type.
    */
@@ -34,4 +57,11 @@ class PropertyMeta {
     return type.getTypeDefn(shortName, assoc);
   }
 
+  /**
+   * Add the imports required for the property type.
+   */
+  void addImports(Set<String> allImports) {
+    type.addImports(allImports);
+  }
+
 }
@@ -0,0 +1,40 @@
+package io.ebean.querybean.generator;
+
+/**
+ * How the property fields of the generated query beans are declared and initialised.
+ */
+enum PropertyMode {
+
+  /**
+   * {@code lateinit var} fields initialised by query bean enhancement (the default).
+   */
+  LATEINIT,
+
+  /**
+   * {@code @JvmField val} fields initialised explicitly such that no enhancement or reflection is required.
+   * <p>
+   * Association properties of assoc beans are initialised lazily as the associations can be cyclic.
+   */
+  INIT,
+
+  /**
+   * Properties created on first access via a getter and a nullable private backing field such that
+   * constructing a query bean does not allocate the properties that the query does not use.
+   */
+  LAZY;
+
+  /**
+   * Return the mode for the querybean.properties option value (null when the value is invalid).
+   */
+  static PropertyMode of(String option) {
+    if (option == null) {
+      return LATEINIT;
+    }
+    for (PropertyMode mode : values()) {
+      if (mode.name().equalsIgnoreCase(option.trim())) {
+        return mode;
+      }
+    }
+    return null;
+  }
+}
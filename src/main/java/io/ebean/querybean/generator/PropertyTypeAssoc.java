@@ -12,15 +12,29 @@ class PropertyTypeAssoc extends PropertyType {
    */
   private final String assocPackage;
 
+  /**
+   * The associated entity (or embeddable) type.
+   */
+  private final String targetType;
+
   /**
    * Construct given the associated bean type name and package.
    *
    * @param qAssocTypeName the associated bean type name.
    * @param assocPackage   the associated bean package.
+   * @param targetType     the associated entity type.
    */
-  PropertyTypeAssoc(String qAssocTypeName, String assocPackage) {
+  PropertyTypeAssoc(String qAssocTypeName, String assocPackage, String targetType) {
     super(qAssocTypeName);
     this.assocPackage = assocPackage;
+    this.targetType = targetType;
+  }
+
+  /**
+   * Return the associated entity (or embeddable) type.
+   */
+  String targetType() {
+    return targetType;
   }
 
   @Override
@@ -14,21 +14,42 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Holds the Property types and how they match to class types.
+ * <p>
+ * An instance is created per compilation (processing context) holding the interned enum,
+ * assoc, array and scalar types of that compilation. The built-in types and the resolutions of
+ * the JDK, Kotlin and Joda types are the same for all compilations and are shared in the JVM,
+ * such that a long lived build daemon neither registers them per compilation nor holds on to
+ * the types of previous compilations (the property types are immutable).
  */
 class PropertyTypeMap {
 
+  /**
+   * Built-in property types keyed by class, shared in the JVM (not modified after class initialisation).
+   */
+  private static final Map<String, PropertyType> BUILT_IN = builtInTypes();
+
+  /**
+   * Property types resolved for the JDK, Kotlin and Joda types keyed by the canonical type, shared in the JVM.
+   */
+  private static final Map<String, PropertyType> SHARED_RESOLVED = new ConcurrentHashMap<>();
+
   /**
    * Property type for Db Json properties.
    */
-  private final PropertyType dbJsonType = new PropertyType("PJson");
+  private static final PropertyType DB_JSON_TYPE = new PropertyType("PJson");
 
-  private Map<String,PropertyType> map = new HashMap<>();
+  /**
+   * Interned (flyweight) enum, assoc, array and scalar property types keyed by their full definition.
+   */
+  private final Map<String, PropertyType> interned = new ConcurrentHashMap<>();
 
-  PropertyTypeMap() {
+  private static Map<String, PropertyType> builtInTypes() {
 
+    Map<String, PropertyType> map = new HashMap<>();
     map.put("boolean", new PropertyType("PBoolean"));
     map.put("short", new PropertyType("PShort"));
     map.put("int", new PropertyType("PInteger"));
@@ -36,27 +57,27 @@ class PropertyTypeMap {
     map.put("double", new PropertyType("PDouble"));
     map.put("float", new PropertyType("PFloat"));
 
-    addType(Boolean.class);
-    addType(Short.class);
-    addType(Integer.class);
-    addType(Long.class);
-    addType(Double.class);
-    addType(Float.class);
-    addType(String.class);
-    addType(Timestamp.class);
+    addType(map, Boolean.class);
+    addType(map, Short.class);
+    addType(map, Integer.class);
+    addType(map, Long.class);
+    addType(map, Double.class);
+    addType(map, Float.class);
+    addType(map, String.class);
+    addType(map, Timestamp.class);
     map.put(java.sql.Date.class.getName(), new PropertyType("PSqlDate"));
     map.put(java.util.Date.class.getName(), new PropertyType("PUtilDate"));
-    addType(java.sql.Time.class);
-    addType(TimeZone.class);
-    addType(BigDecimal.class);
-    addType(BigInteger.class);
-    addType(Calendar.class);
-    addType(Currency.class);
-    addType(Class.class);
+    addType(map, java.sql.Time.class);
+    addType(map, TimeZone.class);
+    addType(map, BigDecimal.class);
+    addType(map, BigInteger.class);
+    addType(map, Calendar.class);
+    addType(map, Currency.class);
+    addType(map, Class.class);
     map.put("java.lang.Class<?>", new PropertyType("PClass"));
-    addType(Locale.class);
-    addType(File.class);
-    addType(InetAddress.class);
+    addType(map, Locale.class);
+    addType(map, File.class);
+    addType(map, InetAddress.class);
 
     map.put(URI.class.getName(), new PropertyType("PUri"));
     map.put(URL.class.getName(), new PropertyType("PUrl"));
@@ -64,39 +85,40 @@ class PropertyTypeMap {
     map.put("io.ebean.types.Inet", new PropertyType("PInet"));
     map.put("io.ebean.types.Cidr", new PropertyType("PCidr"));
 
-    addJava8Types();
-    addJodaTypes();
+    addJava8Types(map);
+    addJodaTypes(map);
+    return map;
   }
 
-  private void addType(Class<?> cls) {
+  private static void addType(Map<String, PropertyType> map, Class<?> cls) {
     String simpleName = cls.getSimpleName();
     map.put(cls.getName(), new PropertyType("P"+simpleName));
   }
 
-  private void addJava8Types() {
+  private static void addJava8Types(Map<String, PropertyType> map) {
 
     try {
       Class.forName("java.time.Instant");
     } catch (ClassNotFoundException e) {
       return;
     }
-    addType(java.time.DayOfWeek.class);
-    addType(java.time.Duration.class);
-    addType(java.time.Instant.class);
-    addType(java.time.LocalDate.class);
-    addType(java.time.LocalDateTime.class);
-    addType(java.time.LocalTime.class);
-    addType(java.time.Month.class);
-    addType(java.time.MonthDay.class);
-    addType(java.time.OffsetDateTime.class);
-    addType(java.time.OffsetTime.class);
-    addType(java.time.Year.class);
-    addType(java.time.YearMonth.class);
-    addType(java.time.ZoneId.class);
-    addType(java.time.ZoneOffset.class);
-  }
-
-  private void addJodaTypes() {
+    addType(map, java.time.DayOfWeek.class);
+    addType(map, java.time.Duration.class);
+    addType(map, java.time.Instant.class);
+    addType(map, java.time.LocalDate.class);
+    addType(map, java.time.LocalDateTime.class);
+    addType(map, java.time.LocalTime.class);
+    addType(map, java.time.Month.class);
+    addType(map, java.time.MonthDay.class);
+    addType(map, java.time.OffsetDateTime.class);
+    addType(map, java.time.OffsetTime.class);
+    addType(map, java.time.Year.class);
+    addType(map, java.time.YearMonth.class);
+    addType(map, java.time.ZoneId.class);
+    addType(map, java.time.ZoneOffset.class);
+  }
+
+  private static void addJodaTypes(Map<String, PropertyType> map) {
     map.put("org.joda.time.DateTime", new PropertyType("PJodaDateTime"));
     map.put("org.joda.time.DateMidnight", new PropertyType("PJodaDateMidnight"));
     map.put("org.joda.time.LocalDate", new PropertyType("PJodaLocalDate"));
@@ -108,13 +130,99 @@ class PropertyTypeMap {
    * Return the property type for the given class description.
    */
   PropertyType getType(String classDesc) {
-    return map.get(classDesc);
+    return BUILT_IN.get(classDesc);
+  }
+
+  /**
+   * Return true if the resolution of the canonical type is the same for all compilations.
+   * <p>
+   * These are the types of the JDK, Kotlin and Joda (not entities) without type arguments
+   * (which could be entities of the compilation).
+   * </p>
+   */
+  static boolean isSharedResolution(String canonicalType) {
+    return canonicalType.indexOf('<') == -1
+      && (canonicalType.startsWith("java.") || canonicalType.startsWith("javax.")
+      || canonicalType.startsWith("kotlin.") || canonicalType.startsWith("org.joda."));
+  }
+
+  /**
+   * Return the shared resolution of the canonical type (null when not resolved yet).
+   */
+  static PropertyType resolved(String canonicalType) {
+    return SHARED_RESOLVED.get(canonicalType);
+  }
+
+  /**
+   * Share the resolution of the canonical type (see {@link #isSharedResolution(String)}).
+   */
+  static void putResolved(String canonicalType, PropertyType type) {
+    SHARED_RESOLVED.putIfAbsent(canonicalType, type);
+  }
+
+  /**
+   * Return the interned enum property type for the given enum class.
+   */
+  PropertyType enumType(String enumClass, String enumShortName) {
+    return interned.computeIfAbsent("PEnum:" + enumClass, k -> new PropertyTypeEnum(enumClass, enumShortName));
+  }
+
+  /**
+   * Return the interned array property type for the given element class.
+   */
+  PropertyType arrayType(String elementClass) {
+    return interned.computeIfAbsent("PArray:" + elementClass, k -> new PropertyTypeArray(elementClass, langShortType(Split.shortName(elementClass))));
+  }
+
+  private static String langShortType(String shortName) {
+    if ("Integer".equals(shortName)) {
+      return "Int";
+    }
+    return shortName;
+  }
+
+  /**
+   * Return the interned assoc property type for the given entity (or embeddable) type.
+   */
+  PropertyType assocType(String fullName) {
+    String[] split = Split.split(fullName);
+    String propertyName = "QAssoc" + split[1];
+    String packageName = packageAppend(split[0]);
+    return assocType(propertyName, packageName, fullName);
+  }
+
+  /**
+   * Prepend the package to the suffix taking null into account.
+   */
+  private static String packageAppend(String origPackage) {
+    if (origPackage == null) {
+      return "query.assoc";
+    } else {
+      return origPackage + "." + "query.assoc";
+    }
+  }
+
+  /**
+   * Return the interned assoc property type for the given QAssoc bean.
+   */
+  private PropertyType assocType(String qAssocTypeName, String assocPackage, String targetType) {
+    return interned.computeIfAbsent("QAssoc:" + assocPackage + "." + qAssocTypeName, k -> new PropertyTypeAssoc(qAssocTypeName, assocPackage, targetType));
+  }
+
+  /**
+   * Return the interned scalar (or scalar comparable) property type for the given attribute class.
+   */
+  PropertyType scalarType(String attributeClass, boolean comparable) {
+    if (comparable) {
+      return interned.computeIfAbsent("PScalarComparable:" + attributeClass, k -> new PropertyTypeScalarComparable(attributeClass));
+    }
+    return interned.computeIfAbsent("PScalar:" + attributeClass, k -> new PropertyTypeScalar(attributeClass));
   }
 
   /**
    * Return the Db Json property type (for DbJson and DbJsonB).
    */
   PropertyType getDbJsonType() {
-    return dbJsonType;
+    return DB_JSON_TYPE;
   }
 }
@@ -1,11 +1,15 @@
 package io.ebean.querybean.generator;
 
-import javax.tools.FileObject;
-import javax.tools.JavaFileObject;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.StringJoiner;
 
 /**
@@ -13,7 +17,37 @@ import java.util.StringJoiner;
  */
 class SimpleModuleInfoWriter {
 
-  private final ProcessingContext processingContext;
+  private static final Template PACKAGE = Template.of("package %s;");
+  private static final Template IMPORT = Template.of("import %s;");
+  private static final Template OTHER = Template.of("other={%s}, ");
+  private static final Template ENTITIES = Template.of("entities={%s}");
+  private static final Template CLASS = Template.of("public class %s implements ModuleInfoLoader {");
+  private static final Template STATEMENT = Template.of("%s    %s");
+  private static final Template ADD_SHARD = Template.of("%s    %s(classes);");
+  private static final Template ADD_METHOD = Template.of("%s  private static void %s(List<Class<?>> classes) {");
+  private static final Template HOLDER = Template.of("  private static final class %s {");
+  private static final Template NEW_LIST = Template.of("      List<Class<?>> classes = new ArrayList<>(%s);");
+  private static final Template ENTITY_CLASSES_FOR = Template.of("        case \"%s\": return Entities_%1$s.CLASSES;");
+
+  /**
+   * Maximum number of classes added per method, larger lists are sharded across methods
+   * such that methods stay well below the 64KB limit (and are small enough to be compiled by the JIT).
+   */
+  static final int SHARD_SIZE = 500;
+
+  /**
+   * Maximum number of class names loaded per statement with the querybean.entityNames option.
+   */
+  private static final int NAMES_SIZE = 100;
+
+  /**
+   * Maximum length of a chunk of comma separated class names (string constants are limited to 64KB).
+   */
+  private static final int NAMES_CHUNK = 16000;
+
+  private final GeneratorContext processingContext;
+
+  private final ModuleRegistry module;
 
   private final String factoryPackage;
   private final String factoryShortName;
@@ -21,59 +55,69 @@ class SimpleModuleInfoWriter {
 
   private Append writer;
 
-  SimpleModuleInfoWriter(ProcessingContext processingContext) {
+  SimpleModuleInfoWriter(GeneratorContext processingContext) {
     this.processingContext = processingContext;
-    this.factoryPackage = processingContext.getFactoryPackage();
+    this.module = processingContext.module();
+    this.factoryPackage = module.getFactoryPackage();
     this.factoryShortName = "_ebean$ModuleInfo";
     this.factoryFullName = factoryPackage + "." + factoryShortName;
   }
 
   void write() throws IOException {
-    writer = new Append(createFileWriter());
+    writer = new Append(new StringBuilder(4096));
     writePackage();
     writeStartClass();
     writeEndClass();
-    writer.close();
+    writeSource();
     writeServicesFile();
+    writeIndexFile();
     writeManifestFile();
   }
 
+  private void writeIndexFile() {
+    try {
+      try (OutputStream os = processingContext.createResource(Constants.METAINF_INDEX)) {
+        module.moduleIndex().write(os);
+      }
+    } catch (IOException e) {
+      processingContext.logError("Failed to write module index " + e.getMessage());
+    }
+  }
+
   private void writeServicesFile() {
 
     try {
-      FileObject jfo = processingContext.createMetaInfServicesWriter();
-      if (jfo != null) {
-        Writer writer = jfo.openWriter();
-        writer.write(factoryFullName);
-        writer.close();
-      }
+      Writer writer = resourceWriter(Constants.METAINF_SERVICES_MODULELOADER);
+      writer.write(factoryFullName);
+      writer.close();
 
     } catch (IOException e) {
       e.printStackTrace();
-      processingContext.logError(null, "Failed to write services file " + e.getMessage());
+      processingContext.logError("Failed to write services file " + e.getMessage());
     }
   }
 
   private void writeManifestFile() {
     try {
-      final Set<String> allEntityPackages = processingContext.getAllEntityPackages();
+      final Set<String> allEntityPackages = module.getAllEntityPackages();
       if (!allEntityPackages.isEmpty()) {
-        FileObject jfo = processingContext.createManifestWriter();
-        if (jfo != null) {
-          Writer writer = jfo.openWriter();
-          writer.write("generated-by: Ebean kotlin-querybean-generator\n");
-          writer.write(manifestEntityPackages(allEntityPackages));
-          writer.write("\n");
-          writer.close();
-        }
+        Writer writer = resourceWriter(Constants.METAINF_MANIFEST);
+        writer.write("generated-by: Ebean kotlin-querybean-generator\n");
+        writer.write(manifestEntityPackages(allEntityPackages));
+        writer.write("\n");
+        writer.close();
       }
 
     } catch (IOException e) {
       e.printStackTrace();
-      processingContext.logError(null, "Failed to write services file " + e.getMessage());
+      processingContext.logError("Failed to write services file " + e.getMessage());
     }
   }
 
+  private Writer resourceWriter(String path) throws IOException {
+    return new OutputStreamWriter(processingContext.createResource(path), StandardCharsets.UTF_8);
+  }
+
   private String manifestEntityPackages(Set<String> allEntityPackages) {
     StringBuilder builder = new StringBuilder("entity-packages: ");
     for (String pkg : allEntityPackages) {
@@ -85,14 +129,21 @@ class SimpleModuleInfoWriter {
 
   private void writePackage() {
 
-    writer.append("package %s;", factoryPackage).eol().eol();
+    writer.append(PACKAGE, factoryPackage).eol().eol();
 
     writer.append("import java.util.ArrayList;").eol();
     writer.append("import java.util.Collections;").eol();
     writer.append("import java.util.List;").eol();
+    if (processingContext.isPreload()) {
+      writer.append("import java.util.concurrent.Callable;").eol();
+      writer.append("import java.util.concurrent.ExecutionException;").eol();
+      writer.append("import java.util.concurrent.ForkJoinPool;").eol();
+      writer.append("import java.util.concurrent.Future;").eol();
+      writer.append("import java.util.concurrent.atomic.AtomicInteger;").eol();
+    }
     final String generated = processingContext.getGeneratedAnnotation();
     if (generated != null) {
-      writer.append("import %s;", generated).eol();
+      writer.append(IMPORT, generated).eol();
     }
     writer.eol();
     writer.append("import io.ebean.config.ModuleInfo;").eol();
@@ -106,19 +157,19 @@ class SimpleModuleInfoWriter {
       writer.append(Constants.AT_GENERATED).eol();
     }
     writer.append("@ModuleInfo(");
-    if (processingContext.hasOtherClasses()) {
-      writer.append("other={%s}, ", otherClasses());
+    if (module.hasOtherClasses()) {
+      writer.append(OTHER, otherClasses());
     }
-    writer.append("entities={%s}", prefixEntities());
+    writer.append(ENTITIES, prefixEntities());
     writer.append(")").eol();
   }
 
   private String otherClasses() {
-    return quoteTypes(processingContext.getOtherClasses());
+    return quoteTypes(module.getOtherClasses());
   }
 
   private String prefixEntities() {
-    return quoteTypes(processingContext.getPrefixEntities());
+    return quoteTypes(module.getPrefixEntities());
   }
 
   private String quoteTypes(Set<String> otherClasses) {
@@ -133,72 +184,334 @@ class SimpleModuleInfoWriter {
 
     buildAtContextModule(writer);
 
-    writer.append("public class %s implements ModuleInfoLoader {", factoryShortName).eol().eol();
-    writeMethodOtherClasses();
-    writeMethodEntityClasses(processingContext.getDbEntities(), null);
+    writer.append(CLASS, factoryShortName).eol().eol();
 
-    final Map<String, Set<String>> otherDbEntities = processingContext.getOtherDbEntities();
+    final Map<String, Set<String>> otherDbEntities = module.getOtherDbEntities();
+    writeMethodEntityClasses();
     writeMethodEntityClassesFor(otherDbEntities.keySet());
+    writeMethodOtherClasses();
+    writeMethodLoad();
+    writeMethodPreload(otherDbEntities);
 
+    writeEntitiesHolder("Entities", "the default database", module.getDbEntities());
     for (Map.Entry<String, Set<String>> otherDb : otherDbEntities.entrySet()) {
-      writeMethodEntityClasses(otherDb.getValue(), otherDb.getKey());
+      writeEntitiesHolder("Entities_" + otherDb.getKey(), "the " + otherDb.getKey() + " database", otherDb.getValue());
     }
   }
 
-  private void writeMethodOtherClasses() {
-    writer.append("  private List<Class<?>> otherClasses() {").eol();
-    if (!processingContext.hasOtherClasses()) {
-      writer.append("    return Collections.emptyList();").eol();
-    } else {
-      writer.append("    List<Class<?>> others = new ArrayList<>();").eol();
-      for (String otherType : processingContext.getOtherClasses()) {
-        writer.append("    others.add(%s.class);", otherType).eol();
+  private void writeMethodEntityClasses() {
+    writer.append("  @Override").eol();
+    writer.append("  public List<Class<?>> entityClasses() {").eol();
+    writer.append("    return Entities.CLASSES;").eol();
+    writer.append("  }").eol().eol();
+  }
+
+  private void writeMethodEntityClassesFor(Set<String> otherDbNames) {
+
+    writer.append("  @Override").eol();
+    writer.append("  public List<Class<?>> entityClassesFor(String dbName) {").eol();
+    if (!otherDbNames.isEmpty()) {
+      writer.append("    if (dbName != null) {").eol();
+      writer.append("      switch (dbName) {").eol();
+      for (String dbName : otherDbNames) {
+        writer.append(ENTITY_CLASSES_FOR, dbName).eol();
       }
-      writer.append("    return others;").eol();
+      writer.append("      }").eol();
+      writer.append("    }").eol();
     }
+    writer.append("    return Collections.emptyList();").eol();
     writer.append("  }").eol().eol();
   }
 
-  private void writeMethodEntityClasses(Set<String> dbEntities, String dbName) {
+  /**
+   * Write the method adding the other classes (converters etc) to the entity lists.
+   */
+  private void writeMethodOtherClasses() {
+    if (module.hasOtherClasses()) {
+      writeAddMethods("", "addOtherClasses", module.getOtherClasses());
+    }
+  }
 
-    String modifier = "public";
-    String method = "entityClasses";
+  /**
+   * Write a holder class with the immutable list of the entity classes (built on first use).
+   */
+  private void writeEntitiesHolder(String holderName, String description, Set<String> entities) {
+
+    boolean others = module.hasOtherClasses();
+    writer.append("  /**").eol();
+    writer.append("   * Entity classes of ").append(description).append(" (built on first use).").eol();
+    writer.append("   */").eol();
+    writer.append(HOLDER, holderName).eol().eol();
+    writer.append("    static final List<Class<?>> CLASSES = classes();").eol().eol();
+    writer.append("    private static List<Class<?>> classes() {").eol();
+    int size = entities.size() + (others ? module.getOtherClasses().size() : 0);
+    writer.append(NEW_LIST, String.valueOf(size)).eol();
+    List<List<String>> shards = shards(entities);
+    writeAddClasses("  ", "add", shards);
+    if (others) {
+      writer.append("      addOtherClasses(classes);").eol();
+    }
+    writer.append("      return Collections.unmodifiableList(classes);").eol();
+    writer.append("    }").eol();
+    if (shards.size() > 1) {
+      writer.eol();
+      writeShards("  ", "add", shards);
+    }
+    writer.append("  }").eol().eol();
+  }
 
-    if (dbName == null) {
-      writer.append("  @Override").eol();
-    } else {
-      method = dbName + "_entities";
-      modifier = "private";
+  /**
+   * Write a method adding the classes (sharded across methods when there are many).
+   */
+  private void writeAddMethods(String indent, String method, Set<String> classes) {
+    List<List<String>> shards = shards(classes);
+    writer.append(ADD_METHOD, indent, method).eol();
+    writeAddClasses(indent, method, shards);
+    writer.append(indent).append("  }").eol().eol();
+    if (shards.size() > 1) {
+      writeShards(indent, method, shards);
+      writer.eol();
     }
-    writer.append("  %s List<Class<?>> %s() {", modifier, method).eol();
-    writer.append("    List<Class<?>> entities = new ArrayList<>();").eol();
-    for (String dbEntity : dbEntities) {
-      writer.append("    entities.add(%s.class);", dbEntity).eol();
+  }
+
+  /**
+   * Write the method loading classes by name without initialising them (with the querybean.entityNames option).
+   */
+  private void writeMethodLoad() {
+    if (processingContext.isEntityNames()) {
+      writer.append("  private static void load(List<Class<?>> classes, String pkg, String... names) {").eol();
+      writer.append("    ClassLoader loader = ").append(factoryShortName).append(".class.getClassLoader();").eol();
+      writer.append("    for (String name : names) {").eol();
+      writer.append("      try {").eol();
+      writer.append("        classes.add(Class.forName(pkg + name, false, loader));").eol();
+      writer.append("      } catch (ClassNotFoundException e) {").eol();
+      writer.append("        throw new IllegalStateException(\"Entity class not found \" + pkg + name, e);").eol();
+      writer.append("      }").eol();
+      writer.append("    }").eol();
+      writer.append("  }").eol().eol();
     }
-    if (processingContext.hasOtherClasses()) {
-      writer.append("    entities.addAll(otherClasses());").eol();
+  }
+
+  /**
+   * Write the entry point loading and initialising the entity classes in parallel (with the querybean.preload option).
+   */
+  private void writeMethodPreload(Map<String, Set<String>> otherDbEntities) {
+    if (!processingContext.isPreload()) {
+      return;
+    }
+    Set<String> entities = new TreeSet<>(module.getDbEntities());
+    for (Set<String> dbEntities : otherDbEntities.values()) {
+      entities.addAll(dbEntities);
+    }
+    List<String> entityNames = new ArrayList<>(entities.size());
+    List<String> queryBeanNames = new ArrayList<>(entities.size());
+    for (String entity : entities) {
+      entityNames.add(module.binaryName(entity));
+      if (!module.isNested(entity) && !module.isEmbeddable(entity)) {
+        String[] split = Split.split(entity);
+        String pkg = split[0] == null ? "" : split[0] + ".";
+        queryBeanNames.add(pkg + "query.Q" + split[1]);
+      }
     }
-    writer.append("    return entities;").eol();
+    writeNames("PRELOAD_ENTITIES", entityNames);
+    writeNames("PRELOAD_QUERY_BEANS", queryBeanNames);
+
+    writer.append("  /**").eol();
+    writer.append("   * Load and initialise the entity classes (and optionally their query beans) in parallel.").eol();
+    writer.append("   *").eol();
+    writer.append("   * @param parallelism the number of threads used to load the classes").eol();
+    writer.append("   * @param queryBeans  when true also load and initialise the query bean classes").eol();
+    writer.append("   * @return a summary of the classes loaded and the time taken").eol();
+    writer.append("   * @throws IllegalStateException when a class fails to load or initialise").eol();
+    writer.append("   */").eol();
+    writer.append("  public static String preload(int parallelism, boolean queryBeans) {").eol();
+    writer.append("    long start = System.nanoTime();").eol();
+    writer.append("    ClassLoader loader = ").append(factoryShortName).append(".class.getClassLoader();").eol();
+    writer.append("    AtomicInteger loaded = new AtomicInteger();").eol();
+    writer.append("    AtomicInteger notFound = new AtomicInteger();").eol();
+    writer.append("    List<Callable<Void>> tasks = new ArrayList<>();").eol();
+    writer.append("    addPreload(tasks, PRELOAD_ENTITIES, loader, loaded, notFound);").eol();
+    writer.append("    if (queryBeans) {").eol();
+    writer.append("      addPreload(tasks, PRELOAD_QUERY_BEANS, loader, loaded, notFound);").eol();
+    writer.append("    }").eol();
+    writer.append("    int threads = Math.max(1, Math.min(parallelism, tasks.size()));").eol();
+    writer.append("    ForkJoinPool pool = new ForkJoinPool(threads);").eol();
+    writer.append("    List<Future<Void>> futures;").eol();
+    writer.append("    try {").eol();
+    writer.append("      futures = pool.invokeAll(tasks);").eol();
+    writer.append("    } finally {").eol();
+    writer.append("      pool.shutdown();").eol();
+    writer.append("    }").eol();
+    writer.append("    int failed = 0;").eol();
+    writer.append("    Throwable failure = null;").eol();
+    writer.append("    for (Future<Void> future : futures) {").eol();
+    writer.append("      try {").eol();
+    writer.append("        future.get();").eol();
+    writer.append("      } catch (ExecutionException e) {").eol();
+    writer.append("        // e.g. ExceptionInInitializerError or LinkageError").eol();
+    writer.append("        failed++;").eol();
+    writer.append("        if (failure == null) {").eol();
+    writer.append("          failure = e.getCause();").eol();
+    writer.append("        }").eol();
+    writer.append("      } catch (InterruptedException e) {").eol();
+    writer.append("        Thread.currentThread().interrupt();").eol();
+    writer.append("        throw new IllegalStateException(\"Interrupted preloading classes\", e);").eol();
+    writer.append("      }").eol();
+    writer.append("    }").eol();
+    writer.append("    if (failure != null) {").eol();
+    writer.append("      throw new IllegalStateException(\"Failed to preload \" + failed + \" classes\", failure);").eol();
+    writer.append("    }").eol();
+    writer.append("    long millis = (System.nanoTime() - start) / 1000000;").eol();
+    writer.append("    return \"preloaded \" + loaded + \" classes (\" + notFound + \" not found) in \" + millis + \"ms using \" + threads + \" threads\";").eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  private static void addPreload(List<Callable<Void>> tasks, String[] chunks, ClassLoader loader, AtomicInteger loaded, AtomicInteger notFound) {").eol();
+    writer.append("    for (String chunk : chunks) {").eol();
+    writer.append("      for (String name : chunk.split(\",\")) {").eol();
+    writer.append("        tasks.add(() -> {").eol();
+    writer.append("          try {").eol();
+    writer.append("            Class.forName(name, true, loader);").eol();
+    writer.append("            loaded.incrementAndGet();").eol();
+    writer.append("          } catch (ClassNotFoundException e) {").eol();
+    writer.append("            notFound.incrementAndGet();").eol();
+    writer.append("          }").eol();
+    writer.append("          return null;").eol();
+    writer.append("        });").eol();
+    writer.append("      }").eol();
+    writer.append("    }").eol();
     writer.append("  }").eol().eol();
   }
 
-  private void writeMethodEntityClassesFor(Set<String> otherDbNames) {
+  /**
+   * Write the class names as comma separated chunks (keeping constants and the static initialiser small).
+   */
+  private void writeNames(String field, List<String> names) {
+    writer.append("  private static final String[] ").append(field).append(" = {").eol();
+    StringBuilder chunk = new StringBuilder();
+    boolean first = true;
+    for (String name : names) {
+      if (chunk.length() + name.length() > NAMES_CHUNK) {
+        writer.append(first ? "    \"" : ",\n    \"").append(chunk.toString()).append("\"");
+        first = false;
+        chunk.setLength(0);
+      }
+      if (chunk.length() > 0) {
+        chunk.append(',');
+      }
+      chunk.append(name);
+    }
+    if (chunk.length() > 0) {
+      writer.append(first ? "    \"" : ",\n    \"").append(chunk.toString()).append("\"");
+    }
+    writer.eol();
+    writer.append("  };").eol().eol();
+  }
 
-    writer.append("  @Override").eol();
-    writer.append("  public List<Class<?>> entityClassesFor(String dbName) {").eol().eol();
-    for (String dbName : otherDbNames) {
-      writer.append("    if (\"%s\".equals(dbName)) return %s_entities();", dbName, dbName).eol();
+  /**
+   * Return the statements adding the classes split into shards of at most SHARD_SIZE classes.
+   * <p>
+   * With the querybean.entityNames option there is a statement per package (or up to NAMES_SIZE
+   * names of a package) loading the classes by name, otherwise a statement per class literal.
+   */
+  private List<List<String>> shards(Set<String> classes) {
+    List<List<String>> shards = new ArrayList<>();
+    List<String> shard = new ArrayList<>();
+    shards.add(shard);
+    int shardSize = 0;
+    for (Statement statement : statements(classes)) {
+      if (shardSize + statement.size > SHARD_SIZE && !shard.isEmpty()) {
+        shard = new ArrayList<>();
+        shards.add(shard);
+        shardSize = 0;
+      }
+      shard.add(statement.content);
+      shardSize += statement.size;
+    }
+    return shards;
+  }
+
+  private List<Statement> statements(Set<String> classes) {
+    List<Statement> statements = new ArrayList<>();
+    if (!processingContext.isEntityNames()) {
+      for (String type : classes) {
+        statements.add(new Statement("classes.add(" + type + ".class);", 1));
+      }
+      return statements;
+    }
+    String pkg = null;
+    StringBuilder load = null;
+    int size = 0;
+    for (String type : classes) {
+      // loaded by the binary name, e.g. org.foo.Outer$Inner for a nested class
+      String[] split = Split.split(module.binaryName(type));
+      String typePkg = split[0] == null ? "" : split[0] + ".";
+      if (load != null && (size == NAMES_SIZE || !typePkg.equals(pkg))) {
+        statements.add(new Statement(load.append(");").toString(), size));
+        load = null;
+      }
+      if (load == null) {
+        pkg = typePkg;
+        load = new StringBuilder(64).append("load(classes, \"").append(pkg).append('"');
+        size = 0;
+      }
+      load.append(", \"").append(split[1]).append('"');
+      size++;
+    }
+    if (load != null) {
+      statements.add(new Statement(load.append(");").toString(), size));
+    }
+    return statements;
+  }
+
+  /**
+   * Write the statements adding the classes or calling the shard methods when there are many.
+   */
+  private void writeAddClasses(String indent, String shardPrefix, List<List<String>> shards) {
+    if (shards.size() == 1) {
+      for (String statement : shards.get(0)) {
+        writer.append(STATEMENT, indent, statement).eol();
+      }
+    } else {
+      for (int i = 0; i < shards.size(); i++) {
+        writer.append(ADD_SHARD, indent, shardPrefix + i).eol();
+      }
+    }
+  }
+
+  private void writeShards(String indent, String shardPrefix, List<List<String>> shards) {
+    for (int i = 0; i < shards.size(); i++) {
+      if (i > 0) {
+        writer.eol();
+      }
+      writer.append(ADD_METHOD, indent, shardPrefix + i).eol();
+      for (String statement : shards.get(i)) {
+        writer.append(STATEMENT, indent, statement).eol();
+      }
+      writer.append(indent).append("  }").eol();
+    }
+  }
+
+  /**
+   * A statement adding classes with the number of classes it adds.
+   */
+  private static class Statement {
+
+    final String content;
+    final int size;
+
+    Statement(String content, int size) {
+      this.content = content;
+      this.size = size;
     }
-    writer.append("    return Collections.emptyList();").eol();
-    writer.append("  }").eol().eol();
   }
 
   private void writeEndClass() {
     writer.append("}").eol();
   }
 
-  private Writer createFileWriter() throws IOException {
-    JavaFileObject jfo = processingContext.createWriter(factoryFullName);
-    return jfo.openWriter();
+  private void writeSource() throws IOException {
+    try (Writer fileWriter = processingContext.createSourceWriter(factoryFullName)) {
+      fileWriter.write(writer.content());
+    }
   }
 }
@@ -0,0 +1,204 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates the projection of an entity to a DTO annotated with {@code @Projection}.
+ * <p>
+ * The constructor parameters of the DTO are validated against the entity properties and a
+ * {@code <Dto>Projection} object is generated (in the package of the DTO) with the select
+ * clause of the projected properties and a mapping of the entity bean to the DTO without
+ * reflection. The query is an ORM query such that the deployment (naming convention,
+ * inheritance) determines the sql.
+ * <p>
+ * No sql select or ResultSet mapper is generated as the columns are not known at compile time.
+ */
+class SimpleProjectionWriter {
+
+  private static final Template PACKAGE = Template.of("package %s;");
+  private static final Template IMPORT = Template.of("import %s;");
+  private static final Template COMMENT = Template.of(" * Projection of %s to %s.");
+  private static final Template BEGIN_OBJECT = Template.of("object %sProjection {");
+  private static final Template PROPERTIES = Template.of("  const val PROPERTIES = \"%s\"");
+  private static final Template MAP = Template.of("  fun map(bean: %s): %s {");
+  private static final Template MAP_RETURN = Template.of("    return %s(%s)");
+  private static final Template FIND_LIST = Template.of("  fun findList(database: Database, where: String? = null, vararg params: Any?): List<%s> {");
+  private static final Template FIND = Template.of("    val query = database.find(%s::class.java).select(PROPERTIES)");
+
+  private final Set<String> importTypes = new TreeSet<>();
+
+  private final List<String> properties = new ArrayList<>();
+
+  /**
+   * The arguments of the DTO constructor reading the entity bean properties.
+   */
+  private final List<String> arguments = new ArrayList<>();
+
+  private final TypeElement element;
+
+  private final ProcessingContext processingContext;
+
+  private final String dtoFullName;
+
+  private final String destPackage;
+
+  private final String shortName;
+
+  private String entityShortName;
+
+  SimpleProjectionWriter(TypeElement element, ProcessingContext processingContext) {
+    this.element = element;
+    this.processingContext = processingContext;
+    this.dtoFullName = element.getQualifiedName().toString();
+    this.destPackage = processingContext.packageOf(element);
+    this.shortName = element.getSimpleName().toString();
+  }
+
+  /**
+   * Validate the DTO against the entity and gather the columns and mapping (false when invalid).
+   * <p>
+   * This reads the javax.lang.model elements and must run on the processor thread.
+   * </p>
+   */
+  boolean gather() {
+    TypeElement entity = processingContext.projectedEntity(element);
+    if (entity == null) {
+      processingContext.logError(element, "Projection of %s must be of an entity", dtoFullName);
+      return false;
+    }
+    ExecutableElement constructor = constructor();
+    if (constructor == null) {
+      processingContext.logError(element, "Projection %s requires a public constructor with the projected properties", dtoFullName);
+      return false;
+    }
+    Map<String, VariableElement> entityFields = new HashMap<>();
+    for (VariableElement field : processingContext.allFields(entity)) {
+      entityFields.put(field.getSimpleName().toString(), field);
+    }
+    boolean valid = true;
+    for (VariableElement param : constructor.getParameters()) {
+      String name = param.getSimpleName().toString();
+      VariableElement field = entityFields.get(name);
+      String error = validate(field, param);
+      if (error != null) {
+        processingContext.logError(element, "Projection %s property %s %s", dtoFullName, name, error);
+        valid = false;
+      } else {
+        properties.add(name);
+        arguments.add(argument(name, field, param));
+      }
+    }
+    entityShortName = entity.getSimpleName().toString();
+    importTypes.add(Constants.DATABASE);
+    importTypes.add(entity.getQualifiedName().toString());
+    if (element.getNestingKind().isNested()) {
+      importTypes.add(dtoFullName);
+    }
+    final String generated = processingContext.getGeneratedAnnotation();
+    if (generated != null) {
+      importTypes.add(generated);
+    }
+    return valid;
+  }
+
+  /**
+   * Return the public constructor with the most parameters.
+   */
+  private ExecutableElement constructor() {
+    ExecutableElement constructor = null;
+    for (ExecutableElement candidate : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+      if (candidate.getModifiers().contains(Modifier.PUBLIC) && !candidate.getParameters().isEmpty()
+        && (constructor == null || candidate.getParameters().size() > constructor.getParameters().size())) {
+        constructor = candidate;
+      }
+    }
+    return constructor;
+  }
+
+  /**
+   * Return the validation error for the property (null when valid).
+   */
+  private String validate(VariableElement field, VariableElement param) {
+    if (field == null) {
+      return "is not a property of the entity";
+    }
+    PropertyType type = processingContext.getPropertyType(field);
+    if (type == null || type instanceof PropertyTypeAssoc) {
+      return "is not a scalar property of the entity (associations are not supported)";
+    }
+    if (!processingContext.isSameBoxed(field.asType(), param.asType())) {
+      return "type " + param.asType() + " does not match the entity type " + field.asType();
+    }
+    return null;
+  }
+
+  /**
+   * Return the argument reading the entity bean property (asserted non-null for a non-null parameter).
+   */
+  private String argument(String name, VariableElement field, VariableElement param) {
+    if (processingContext.isNonNull(param) && !processingContext.isNonNull(field)) {
+      return "bean." + name + "!!";
+    }
+    return "bean." + name;
+  }
+
+  /**
+   * Render and write the projection.
+   */
+  void write() throws IOException {
+    EntityTiming timing = processingContext.entityTiming(dtoFullName);
+    Append writer = Append.reuseBuffer();
+    writer.append(PACKAGE, destPackage).eol().eol();
+    for (String importType : importTypes) {
+      writer.append(IMPORT, importType).eol();
+    }
+    writer.eol();
+    writer.append("/**").eol();
+    writer.append(COMMENT, entityShortName, shortName).eol();
+    writer.append(" * ").eol();
+    writer.append(" * THIS IS A GENERATED OBJECT, DO NOT MODIFY THIS CLASS.").eol();
+    writer.append(" */").eol();
+    if (processingContext.isGeneratedAvailable()) {
+      writer.append(Constants.AT_GENERATED).eol();
+    }
+    writer.append(BEGIN_OBJECT, shortName).eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * The projected properties (select clause of an ORM query).").eol();
+    writer.append("   */").eol();
+    writer.append(PROPERTIES, String.join(",", properties)).eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * Map the entity bean (with the projected properties loaded) to the projection (without reflection).").eol();
+    writer.append("   */").eol();
+    writer.append(MAP, entityShortName, shortName).eol();
+    writer.append(MAP_RETURN, shortName, String.join(", ", arguments)).eol();
+    writer.append("  }").eol().eol();
+
+    writer.append("  /**").eol();
+    writer.append("   * Find the projections given an optional raw where expression and its positional parameters.").eol();
+    writer.append("   */").eol();
+    writer.append(FIND_LIST, shortName).eol();
+    writer.append(FIND, entityShortName).eol();
+    writer.append("    if (where != null) {").eol();
+    writer.append("      query.where().raw(where, *params)").eol();
+    writer.append("    }").eol();
+    writer.append("    return query.findList().map { map(it) }").eol();
+    writer.append("  }").eol();
+    writer.append("}").eol();
+
+    String content = writer.content();
+    processingContext.writeSource(element, destPackage, shortName + "Projection.kt", content, timing);
+  }
+}
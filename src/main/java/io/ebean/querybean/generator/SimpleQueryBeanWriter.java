@@ -1,12 +1,6 @@
 package io.ebean.querybean.generator;
 
-
-import javax.lang.model.element.TypeElement;
-import javax.lang.model.element.VariableElement;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -42,13 +36,18 @@ class SimpleQueryBeanWriter {
     "kotlin.Char"
   };
 
+  private static final Template ASSOC_BEAN_COMMENT = Template.of(" * Association query bean for %s.");
+  private static final Template ROOT_BEAN_COMMENT = Template.of(" * Query bean for %s.");
+  private static final Template IMPORT = Template.of("import %s;");
+  private static final Template PACKAGE = Template.of("package %s;");
+
   private final Set<String> importTypes = new TreeSet<>();
 
   private final List<PropertyMeta> properties = new ArrayList<>();
 
-  private final TypeElement element;
+  private final BeanModel bean;
 
-  private final ProcessingContext processingContext;
+  private final GeneratorContext processingContext;
 
   private final boolean isEntity;
   private final boolean embeddable;
@@ -56,7 +55,6 @@ class SimpleQueryBeanWriter {
   private final String beanFullName;
   private final LangAdapter langAdapter;
   private boolean writingAssocBean;
-  private final String generatedSourcesDir;
 
   private String destPackage;
   private String origDestPackage;
@@ -66,21 +64,24 @@ class SimpleQueryBeanWriter {
 
   private Append writer;
 
-  SimpleQueryBeanWriter(TypeElement element, ProcessingContext processingContext) {
-    this.langAdapter = new KotlinLangAdapter();
-    this.generatedSourcesDir = processingContext.generatedSourcesDir();
-    this.element = element;
+  private final EntityTiming timing;
+
+  private final ProcessingEvents.Span event;
+
+  private long renderStart;
+
+  SimpleQueryBeanWriter(BeanModel bean, GeneratorContext processingContext) {
+    this.langAdapter = new KotlinLangAdapter(processingContext.isLazyAlias(), processingContext.isQueryMetrics());
+    this.bean = bean;
     this.processingContext = processingContext;
-    this.beanFullName = element.getQualifiedName().toString();
+    this.beanFullName = bean.fullName();
     this.destPackage = derivePackage(beanFullName) + ".query";
     this.shortName = deriveShortName(beanFullName);
-    this.isEntity = processingContext.isEntity(element);
-    this.embeddable = processingContext.isEmbeddable(element);
-    this.dbName = findDbName();
-  }
-
-  private String findDbName() {
-    return processingContext.findDbName(element);
+    this.isEntity = bean.isEntity();
+    this.embeddable = bean.isEmbeddable();
+    this.dbName = bean.dbName();
+    this.timing = processingContext.entityTiming(beanFullName);
+    this.event = processingContext.events().entity(beanFullName);
   }
 
   private LangAdapter lang() {
@@ -95,7 +96,9 @@ class SimpleQueryBeanWriter {
     }
     importTypes.add(beanFullName);
     importTypes.add(Constants.TQROOTBEAN);
-    importTypes.add(Constants.TYPEQUERYBEAN);
+    if (enhanced()) {
+      importTypes.add(Constants.TYPEQUERYBEAN);
+    }
     importTypes.add(Constants.DATABASE);
     importTypes.add(Constants.FETCHGROUP);
     importTypes.add(Constants.QUERY);
@@ -107,36 +110,44 @@ class SimpleQueryBeanWriter {
   }
 
   /**
-   * Recursively add properties from the inheritance hierarchy.
-   * <p>
-   * Includes properties from mapped super classes and usual inheritance.
-   * </p>
+   * Add the properties of the bean (including the inheritance hierarchy).
    */
   private void addClassProperties() {
+    for (PropertyMeta property : bean.properties(timing)) {
+      property.addImports(importTypes);
+      properties.add(property);
+    }
+  }
 
-    List<VariableElement> fields = processingContext.allFields(element);
+  /**
+   * Gather the property meta data.
+   * <p>
+   * This reads the javax.lang.model elements (or KSP symbols) and must run on the processor thread.
+   * </p>
+   */
+  void gather() {
+    gatherPropertyDetails();
+  }
 
-    for (VariableElement field : fields) {
-      PropertyType type = processingContext.getPropertyType(field);
-      if (type != null) {
-        type.addImports(importTypes);
-        properties.add(new PropertyMeta(field.getSimpleName().toString(), type));
-      }
-    }
+  /**
+   * Render and write the root and assoc query beans.
+   * <p>
+   * This only uses the gathered meta data and can run on a worker thread.
+   * </p>
+   */
+  void write() throws IOException {
+    writeRootBean();
+    writeAssocBean();
+    event.end(properties.size(), timing.bytes());
   }
 
   /**
    * Write the type query bean (root bean).
    */
-  void writeRootBean() throws IOException {
+  private void writeRootBean() throws IOException {
 
-    gatherPropertyDetails();
-
-    if (isEmbeddable()) {
-      processingContext.addEntity(beanFullName, dbName);
-    } else if (isEntity()) {
-      processingContext.addEntity(beanFullName, dbName);
-      writer = new Append(createFileWriter());
+    if (!isEmbeddable() && isEntity()) {
+      startWriter();
 
       translateKotlinImportTypes();
 
@@ -149,7 +160,7 @@ class SimpleQueryBeanWriter {
       //writeStaticAliasClass();
       writeClassEnd();
 
-      writer.close();
+      writeFile();
     }
   }
 
@@ -168,6 +179,13 @@ class SimpleQueryBeanWriter {
     return isEntity;
   }
 
+  /**
+   * Return true if the query bean properties are initialised by enhancement (annotated with TypeQueryBean).
+   */
+  private boolean enhanced() {
+    return processingContext.propertyMode() == PropertyMode.LATEINIT;
+  }
+
   private boolean isEmbeddable() {
     return embeddable;
   }
@@ -175,7 +193,7 @@ class SimpleQueryBeanWriter {
   /**
    * Write the type query assoc bean.
    */
-  void writeAssocBean() throws IOException {
+  private void writeAssocBean() throws IOException {
 
     writingAssocBean = true;
     origDestPackage = destPackage;
@@ -185,7 +203,7 @@ class SimpleQueryBeanWriter {
 
     prepareAssocBeanImports();
 
-    writer = new Append(createFileWriter());
+    startWriter();
 
     writePackage();
     writeImports();
@@ -194,7 +212,7 @@ class SimpleQueryBeanWriter {
     writeConstructors();
     writeClassEnd();
 
-    writer.close();
+    writeFile();
   }
 
   /**
@@ -234,6 +252,7 @@ class SimpleQueryBeanWriter {
       writeAssocBeanConstructor();
     } else {
       writeRootBeanConstructor();
+      lang().rootBeanFind(writer, shortName);
     }
   }
 
@@ -263,14 +282,39 @@ class SimpleQueryBeanWriter {
    */
   private void writeFields() {
 
+    PropertyMode mode = processingContext.propertyMode();
     for (PropertyMeta property : properties) {
       String typeDefn = property.getTypeDefn(shortName, writingAssocBean);
-      lang().fieldDefn(writer, property.getName(), typeDefn);
+      if (mode == PropertyMode.INIT) {
+        lang().initFieldDefn(writer, property.getName(), typeDefn, lazyInit(property), writingAssocBean);
+      } else if (mode == PropertyMode.LAZY) {
+        lang().lazyFieldDefn(writer, property.getName(), typeDefn, writingAssocBean);
+      } else {
+        lang().fieldDefn(writer, property.getName(), typeDefn);
+      }
       writer.eol();
     }
     writer.eol();
   }
 
+  /**
+   * Return true if the property is initialised lazily (with querybean.properties=init).
+   * <p>
+   * By default the association properties of assoc beans are lazy as associations can be cyclic.
+   * With querybean.maxDepth association properties are lazy when the graph they would create
+   * reaches a cycle or is deeper than the maximum depth and otherwise eager.
+   * </p>
+   */
+  private boolean lazyInit(PropertyMeta property) {
+    if (!property.isAssociation()) {
+      return false;
+    }
+    if (processingContext.maxDepth() == 0) {
+      return writingAssocBean;
+    }
+    return property.assocHeight() >= processingContext.maxDepth();
+  }
+
   /**
    * Write the class definition.
    */
@@ -278,26 +322,30 @@ class SimpleQueryBeanWriter {
 
     if (writingAssocBean) {
       writer.append("/**").eol();
-      writer.append(" * Association query bean for %s.", shortName).eol();
+      writer.append(ASSOC_BEAN_COMMENT, shortName).eol();
       writer.append(" * ").eol();
       writer.append(" * THIS IS A GENERATED OBJECT, DO NOT MODIFY THIS CLASS.").eol();
       writer.append(" */").eol();
       if (processingContext.isGeneratedAvailable()) {
         writer.append(Constants.AT_GENERATED).eol();
       }
-      writer.append(Constants.AT_TYPEQUERYBEAN).eol();
+      if (enhanced()) {
+        writer.append(Constants.AT_TYPEQUERYBEAN).eol();
+      }
       lang().beginAssocClass(writer, shortName, origShortName);
 
     } else {
       writer.append("/**").eol();
-      writer.append(" * Query bean for %s.", shortName).eol();
+      writer.append(ROOT_BEAN_COMMENT, shortName).eol();
       writer.append(" * ").eol();
       writer.append(" * THIS IS A GENERATED OBJECT, DO NOT MODIFY THIS CLASS.").eol();
       writer.append(" */").eol();
       if (processingContext.isGeneratedAvailable()) {
         writer.append(Constants.AT_GENERATED).eol();
       }
-      writer.append(Constants.AT_TYPEQUERYBEAN).eol();
+      if (enhanced()) {
+        writer.append(Constants.AT_TYPEQUERYBEAN).eol();
+      }
       lang().beginClass(writer, shortName);
     }
 
@@ -320,27 +368,27 @@ class SimpleQueryBeanWriter {
   private void writeImports() {
 
     for (String importType : importTypes) {
-      writer.append("import %s;", importType).eol();
+      writer.append(IMPORT, importType).eol();
     }
     writer.eol();
   }
 
   private void writePackage() {
-    writer.append("package %s;", destPackage).eol().eol();
+    writer.append(PACKAGE, destPackage).eol().eol();
   }
 
-  private Writer createFileWriter() throws IOException {
-
-    String relPath = destPackage.replace('.', '/');
-
-    File absDir = new File(generatedSourcesDir, relPath);
-    if (!absDir.exists() && !absDir.mkdirs()) {
-      processingContext.logNote("failed to create directories for:" + absDir.getAbsolutePath());
-    }
+  /**
+   * Render the source into the reused buffer such that it is only written to disk when changed.
+   */
+  private void startWriter() {
+    writer = Append.reuseBuffer();
+    renderStart = System.nanoTime();
+  }
 
-    String fullPath = relPath + "/Q" + shortName + ".kt";
-    File absFile = new File(generatedSourcesDir, fullPath);
-    return new FileWriter(absFile);
+  private void writeFile() throws IOException {
+    String content = writer.content();
+    timing.render(System.nanoTime() - renderStart);
+    bean.writeSource(destPackage, "Q" + shortName + ".kt", content, timing);
   }
 
   private String derivePackage(String name) {
@@ -0,0 +1,95 @@
+package io.ebean.querybean.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A format string parsed once into constant fragments and argument positions.
+ * <p>
+ * Supports the {@code %s} and {@code %n$s} specifiers (as used with String.format) such that
+ * content is appended directly without the format parsing, varargs and temporary strings.
+ */
+final class Template {
+
+  /**
+   * The constant fragments with fragments[i] preceding argument args[i].
+   */
+  private final String[] fragments;
+
+  /**
+   * The argument index for each placeholder.
+   */
+  private final int[] args;
+
+  /**
+   * The trailing constant fragment.
+   */
+  private final String tail;
+
+  private Template(String[] fragments, int[] args, String tail) {
+    this.fragments = fragments;
+    this.args = args;
+    this.tail = tail;
+  }
+
+  /**
+   * Parse the format into a template.
+   */
+  static Template of(String format) {
+
+    List<String> fragments = new ArrayList<>();
+    List<Integer> args = new ArrayList<>();
+    StringBuilder fragment = new StringBuilder();
+    int ordinary = 0;
+    int pos = 0;
+    while (pos < format.length()) {
+      char ch = format.charAt(pos++);
+      if (ch != '%') {
+        fragment.append(ch);
+        continue;
+      }
+      int end = format.indexOf('s', pos);
+      if (end == -1) {
+        throw new IllegalArgumentException("Unsupported format " + format);
+      }
+      String spec = format.substring(pos, end);
+      if (spec.isEmpty()) {
+        args.add(ordinary++);
+      } else if (spec.endsWith("$")) {
+        args.add(Integer.parseInt(spec.substring(0, spec.length() - 1)) - 1);
+      } else {
+        throw new IllegalArgumentException("Unsupported format " + format);
+      }
+      if (args.get(args.size() - 1) > 1) {
+        throw new IllegalArgumentException("At most 2 arguments supported " + format);
+      }
+      fragments.add(fragment.toString());
+      fragment.setLength(0);
+      pos = end + 1;
+    }
+
+    int[] argIndexes = new int[args.size()];
+    for (int i = 0; i < argIndexes.length; i++) {
+      argIndexes[i] = args.get(i);
+    }
+    return new Template(fragments.toArray(new String[0]), argIndexes, fragment.toString());
+  }
+
+  /**
+   * Append the template content with a single argument.
+   */
+  void append(StringBuilder buffer, String arg0) {
+    append(buffer, arg0, null);
+  }
+
+  /**
+   * Append the template content with two arguments.
+   */
+  void append(StringBuilder buffer, String arg0, String arg1) {
+    for (int i = 0; i < args.length; i++) {
+      buffer.append(fragments[i]);
+      buffer.append(args[i] == 0 ? arg0 : arg1);
+    }
+    buffer.append(tail);
+  }
+}
@@ -0,0 +1,95 @@
+package io.ebean.querybean.generator;
+
+import javax.lang.model.element.Element;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders and writes the query beans once their meta data has been gathered.
+ * <p>
+ * With a parallelism of 1 (the default) this runs on the processor thread. Otherwise the
+ * rendering and file writing is done by a pool of worker threads and errors are reported
+ * back on the processor thread (in submission order) via {@link #await()}.
+ */
+class WritePipeline {
+
+  private final ProcessingContext processingContext;
+
+  private final ExecutorService executor;
+
+  private final List<Pending> pending = new ArrayList<>();
+
+  WritePipeline(ProcessingContext processingContext, int parallelism) {
+    this.processingContext = processingContext;
+    this.executor = (parallelism > 1) ? Executors.newFixedThreadPool(parallelism, WritePipeline::newThread) : null;
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "querybean-writer");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Submit the bean writer (with gathered meta data) to be rendered and written.
+   */
+  void submit(Element element, SimpleQueryBeanWriter beanWriter) {
+    if (executor == null) {
+      try {
+        beanWriter.write();
+      } catch (Throwable e) {
+        logError(element, e);
+      }
+    } else {
+      pending.add(new Pending(element, executor.submit(() -> {
+        beanWriter.write();
+        return null;
+      })));
+    }
+  }
+
+  /**
+   * Wait for the submitted writes to complete reporting any errors.
+   */
+  void await() {
+    for (Pending write : pending) {
+      try {
+        write.future.get();
+      } catch (ExecutionException e) {
+        logError(write.element, e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logError(write.element, e);
+      }
+    }
+    pending.clear();
+  }
+
+  /**
+   * Shutdown the worker threads (at the end of processing).
+   */
+  void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private void logError(Element element, Throwable e) {
+    processingContext.logError(element, "Error generating query beans: " + e);
+  }
+
+  private static class Pending {
+
+    private final Element element;
+    private final Future<?> future;
+
+    Pending(Element element, Future<?> future) {
+      this.element = element;
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package io.ebean.querybean.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Java Flight Recorder events of the processing phases.
+ * <p>
+ * Only loaded (reflectively via {@link ProcessingEvents#create()}) when jdk.jfr is available.
+ * Compiled from src/main/jfr by the jfr profile (building with JDK 11+) as the main sources
+ * target Java 8 and do not require jdk.jfr.
+ * When an event is not enabled in the recording no span is started.
+ */
+class JfrEvents extends ProcessingEvents {
+
+  @Override
+  Span round(int round) {
+    RoundEvent event = new RoundEvent();
+    if (!event.isEnabled()) {
+      return NO_SPAN;
+    }
+    event.round = round;
+    event.begin();
+    return event;
+  }
+
+  @Override
+  Span entity(String entity) {
+    EntityEvent event = new EntityEvent();
+    if (!event.isEnabled()) {
+      return NO_SPAN;
+    }
+    event.entity = entity;
+    event.begin();
+    return event;
+  }
+
+  @Override
+  Span typeResolution(Element field) {
+    TypeResolutionEvent event = new TypeResolutionEvent();
+    if (!event.isEnabled()) {
+      return NO_SPAN;
+    }
+    event.entity = field.getEnclosingElement().toString();
+    event.property = field.getSimpleName().toString();
+    event.type = field.asType().toString();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  Span fileWrite(String entity, String fileName) {
+    FileWriteEvent event = new FileWriteEvent();
+    if (!event.isEnabled()) {
+      return NO_SPAN;
+    }
+    event.entity = entity;
+    event.file = fileName;
+    event.begin();
+    return event;
+  }
+
+  @Name("io.ebean.querybean.Round")
+  @Label("Round")
+  @Category({"Ebean", "Query Bean Generator"})
+  @Description("Annotation processing round generating query beans")
+  static class RoundEvent extends Event implements Span {
+
+    @Label("Round")
+    int round;
+
+    @Label("Entities")
+    int entities;
+
+    @Override
+    public void end(int count, long bytes) {
+      this.entities = count;
+      commit();
+    }
+  }
+
+  @Name("io.ebean.querybean.Entity")
+  @Label("Entity")
+  @Category({"Ebean", "Query Bean Generator"})
+  @Description("Gathering, rendering and writing the query beans of an entity")
+  static class EntityEvent extends Event implements Span {
+
+    @Label("Entity")
+    String entity;
+
+    @Label("Properties")
+    int properties;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+
+    @Override
+    public void end(int count, long bytes) {
+      this.properties = count;
+      this.bytes = bytes;
+      commit();
+    }
+  }
+
+  @Name("io.ebean.querybean.TypeResolution")
+  @Label("Type Resolution")
+  @Category({"Ebean", "Query Bean Generator"})
+  @Description("Resolving the query bean property type of a field (not cached)")
+  @StackTrace(false)
+  static class TypeResolutionEvent extends Event implements Span {
+
+    @Label("Entity")
+    String entity;
+
+    @Label("Property")
+    String property;
+
+    @Label("Type")
+    String type;
+
+    @Label("Resolved")
+    boolean resolved;
+
+    @Override
+    public void end(int count, long bytes) {
+      this.resolved = count > 0;
+      commit();
+    }
+  }
+
+  @Name("io.ebean.querybean.FileWrite")
+  @Label("File Write")
+  @Category({"Ebean", "Query Bean Generator"})
+  @Description("Writing (or skipping when unchanged) a generated source file")
+  @StackTrace(false)
+  static class FileWriteEvent extends Event implements Span {
+
+    @Label("Entity")
+    String entity;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+
+    @Override
+    public void end(int count, long bytes) {
+      this.bytes = bytes;
+      commit();
+    }
+  }
+}
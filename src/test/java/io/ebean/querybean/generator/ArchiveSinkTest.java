@@ -0,0 +1,120 @@
+package io.ebean.querybean.generator;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+public class ArchiveSinkTest {
+
+  @Test
+  public void close_writesSortedEntries_skipsUnchanged() throws Exception {
+
+    File archive = Files.createTempDirectory("querybean-srcjar").resolve("sources.srcjar").toFile();
+    assertEquals(write(archive).written(), 2);
+    assertEquals(entries(archive), asList("org/foo/query/QCustomer.kt", "org/foo/query/assoc/QAssocCustomer.kt"));
+
+    try (ZipFile zip = new ZipFile(archive)) {
+      ZipEntry entry = zip.getEntry("org/foo/query/QCustomer.kt");
+      assertEquals(new String(readAll(zip, entry), StandardCharsets.UTF_8), "class QCustomer");
+    }
+
+    // same content so the archive is not rewritten
+    ArchiveSink sink = write(archive);
+    assertEquals(sink.written(), 0);
+    assertEquals(sink.skipped(), 2);
+  }
+
+  @Test
+  public void close_partialCompile_keepsEntriesOfRetainedClasses() throws Exception {
+
+    File archive = Files.createTempDirectory("querybean-srcjar").resolve("sources.srcjar").toFile();
+    ArchiveSink full = new ArchiveSink(archive, name -> true);
+    write(full, "Customer", "class QCustomer");
+    write(full, "Order", "class QOrder");
+    write(full, "Product", "class QProduct");
+    full.close();
+    assertEquals(entries(archive).size(), 6);
+
+    // only Customer compiled, Product deleted (or no longer an entity)
+    ArchiveSink partial = new ArchiveSink(archive, name -> !name.equals("org.foo.Product"));
+    write(partial, "Customer", "class QCustomer(changed)");
+    partial.close();
+
+    assertEquals(entries(archive), asList("org/foo/query/QCustomer.kt", "org/foo/query/QOrder.kt",
+      "org/foo/query/assoc/QAssocCustomer.kt", "org/foo/query/assoc/QAssocOrder.kt"));
+    try (ZipFile zip = new ZipFile(archive)) {
+      assertEquals(new String(readAll(zip, zip.getEntry("org/foo/query/QCustomer.kt")), StandardCharsets.UTF_8), "class QCustomer(changed)");
+      assertEquals(new String(readAll(zip, zip.getEntry("org/foo/query/QOrder.kt")), StandardCharsets.UTF_8), "class QOrder");
+    }
+  }
+
+  @Test
+  public void close_noSources_removesEntriesOfDeletedClasses() throws Exception {
+
+    File archive = Files.createTempDirectory("querybean-srcjar").resolve("sources.srcjar").toFile();
+    ArchiveSink full = new ArchiveSink(archive, name -> true);
+    write(full, "Customer", "class QCustomer");
+    write(full, "Order", "class QOrder");
+    full.close();
+
+    // nothing compiled, Order deleted
+    ArchiveSink partial = new ArchiveSink(archive, name -> !name.equals("org.foo.Order"));
+    partial.close();
+    assertEquals(entries(archive), asList("org/foo/query/QCustomer.kt", "org/foo/query/assoc/QAssocCustomer.kt"));
+
+    // nothing compiled or deleted so the archive is not rewritten
+    ArchiveSink unchanged = new ArchiveSink(archive, name -> true);
+    unchanged.close();
+    assertEquals(unchanged.written(), 0);
+    assertEquals(unchanged.skipped(), 2);
+
+    // no archive and nothing compiled
+    File none = new File(archive.getParentFile(), "none.srcjar");
+    new ArchiveSink(none, name -> true).close();
+    assertEquals(none.exists(), false);
+  }
+
+  private ArchiveSink write(File archive) throws Exception {
+    ArchiveSink sink = new ArchiveSink(archive, name -> true);
+    EntityTiming timing = new EntityTiming("org.foo.Customer");
+    sink.write(null, "org.foo.query.assoc", "QAssocCustomer.kt", "class QAssocCustomer", timing);
+    sink.write(null, "org.foo.query", "QCustomer.kt", "class QCustomer", timing);
+    sink.close();
+    return sink;
+  }
+
+  private void write(ArchiveSink sink, String entity, String content) throws Exception {
+    EntityTiming timing = new EntityTiming("org.foo." + entity);
+    sink.write(null, "org.foo.query.assoc", "QAssoc" + entity + ".kt", "class QAssoc" + entity, timing);
+    sink.write(null, "org.foo.query", "Q" + entity + ".kt", content, timing);
+  }
+
+  private List<String> entries(File archive) throws Exception {
+    List<String> names = new ArrayList<>();
+    try (ZipFile zip = new ZipFile(archive)) {
+      zip.stream().forEach(entry -> names.add(entry.getName()));
+    }
+    return names;
+  }
+
+  private byte[] readAll(ZipFile zip, ZipEntry entry) throws Exception {
+    byte[] bytes = new byte[(int) entry.getSize()];
+    int offset = 0;
+    try (InputStream is = zip.getInputStream(entry)) {
+      while (offset < bytes.length) {
+        offset += is.read(bytes, offset, bytes.length - offset);
+      }
+    }
+    return bytes;
+  }
+}
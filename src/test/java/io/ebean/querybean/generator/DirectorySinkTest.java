@@ -0,0 +1,33 @@
+package io.ebean.querybean.generator;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.assertEquals;
+
+public class DirectorySinkTest {
+
+  @Test
+  public void write_skipsUnchanged() throws Exception {
+
+    Path baseDir = Files.createTempDirectory("querybean-sink");
+    DirectorySink sink = new DirectorySink(baseDir.toString());
+    EntityTiming timing = new EntityTiming("org.foo.Customer");
+
+    sink.write(null, "org.foo.query", "QCustomer.kt", "class QCustomer", timing);
+    sink.write(null, "org.foo.query", "QCustomer.kt", "class QCustomer", timing);
+    assertEquals(sink.written(), 1);
+    assertEquals(sink.skipped(), 1);
+
+    sink.write(null, "org.foo.query", "QCustomer.kt", "class QCustomer2", timing);
+    assertEquals(sink.written(), 2);
+    assertEquals(timing.bytes(), 31L);
+
+    File file = baseDir.resolve("org/foo/query/QCustomer.kt").toFile();
+    assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), "class QCustomer2");
+  }
+}
@@ -0,0 +1,56 @@
+package io.ebean.querybean.generator;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class ModuleIndexTest {
+
+  @Test
+  public void write_read() throws Exception {
+
+    ModuleIndex index = ModuleIndex.read(new ByteArrayInputStream(write()));
+
+    assertEquals(index.entities().keySet(), new TreeSet<>(asList("org.foo.Customer", "org.foo.Order", "org.foo.Order.Line", "org.bar.Contact")));
+    assertNull(index.entities().get("org.foo.Customer"));
+    assertNull(index.entities().get("org.foo.Order.Line"));
+    assertEquals(index.entities().get("org.bar.Contact"), "other");
+    assertEquals(index.others(), new TreeSet<>(asList("org.foo.MyConverter")));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void read_corrupt() throws Exception {
+
+    byte[] bytes = write();
+    bytes[bytes.length / 2] ^= 1;
+    ModuleIndex.read(new ByteArrayInputStream(bytes));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void read_truncated() throws Exception {
+
+    byte[] bytes = write();
+    ModuleIndex.read(new ByteArrayInputStream(bytes, 0, bytes.length - 3));
+  }
+
+  private byte[] write() throws IOException {
+    Map<String, String> entities = new LinkedHashMap<>();
+    entities.put("org.foo.Customer", null);
+    entities.put("org.foo.Order", null);
+    entities.put("org.foo.Order.Line", null);
+    entities.put("org.bar.Contact", "other");
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ModuleIndex(entities, new TreeSet<>(asList("org.foo.MyConverter"))).write(os);
+    return os.toByteArray();
+  }
+}
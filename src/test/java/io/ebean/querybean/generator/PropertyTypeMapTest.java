@@ -0,0 +1,66 @@
+package io.ebean.querybean.generator;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class PropertyTypeMapTest {
+
+  @Test
+  public void getType_builtIn_sharedByInstances() {
+    PropertyTypeMap first = new PropertyTypeMap();
+    assertEquals(first.getType("java.time.Instant").toString(), "PInstant");
+    assertSame(new PropertyTypeMap().getType("java.time.Instant"), first.getType("java.time.Instant"));
+  }
+
+  @Test
+  public void interned_notSharedWithOtherContext() {
+    PropertyTypeMap first = new PropertyTypeMap();
+    PropertyType status = first.enumType("org.example.Status", "Status");
+    PropertyType customer = first.assocType("org.example.Customer");
+    assertSame(first.enumType("org.example.Status", "Status"), status);
+    assertSame(first.assocType("org.example.Customer"), customer);
+
+    // a later compilation (e.g. in a build daemon) does not see the project types of the first
+    PropertyTypeMap second = new PropertyTypeMap();
+    assertNotSame(second.enumType("org.example.Status", "Status"), status);
+    assertNotSame(second.assocType("org.example.Customer"), customer);
+  }
+
+  @Test
+  public void isSharedResolution() {
+    assertTrue(PropertyTypeMap.isSharedResolution("java.util.Currency"));
+    assertTrue(PropertyTypeMap.isSharedResolution("kotlin.text.Regex"));
+    assertTrue(PropertyTypeMap.isSharedResolution("org.joda.time.DateTime"));
+    assertFalse(PropertyTypeMap.isSharedResolution("java.util.List<org.example.domain.Order>"));
+    assertFalse(PropertyTypeMap.isSharedResolution("org.example.domain.Customer"));
+  }
+
+  @Test
+  public void enumType_when_concurrent() throws Exception {
+    PropertyTypeMap map = new PropertyTypeMap();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<PropertyType>> futures = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        futures.add(executor.submit(() -> map.enumType("org.example.Status", "Status")));
+      }
+      PropertyType first = futures.get(0).get();
+      for (Future<PropertyType> future : futures) {
+        assertSame(future.get(), first);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
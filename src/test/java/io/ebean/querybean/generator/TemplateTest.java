@@ -0,0 +1,35 @@
+package io.ebean.querybean.generator;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class TemplateTest {
+
+  private static String apply(String format, String arg0, String arg1) {
+    StringBuilder buffer = new StringBuilder();
+    Template.of(format).append(buffer, arg0, arg1);
+    return buffer.toString();
+  }
+
+  @Test
+  public void append_ordinary() {
+    assertEquals(apply("class Q%s<R> : TQAssocBean<%s,R> {", "AssocCustomer", "Customer"), String.format("class Q%s<R> : TQAssocBean<%s,R> {", "AssocCustomer", "Customer"));
+  }
+
+  @Test
+  public void append_explicitIndex() {
+    assertEquals(apply("class Q%s : TQRootBean<%1$s, Q%1$s> {", "Customer", null), "class QCustomer : TQRootBean<Customer, QCustomer> {");
+    assertEquals(apply("if (\"%s\".equals(dbName)) return %1$s_entities();", "other", null), "if (\"other\".equals(dbName)) return other_entities();");
+  }
+
+  @Test
+  public void append_noArguments() {
+    assertEquals(apply("  }", null, null), "  }");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void of_unsupported() {
+    Template.of("count %d");
+  }
+}